@@ -0,0 +1,172 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+
+/**
+ * This class sends one job to a BatchServer, as if the program of the job was
+ * run directly: the standard input of the client becomes the standard input of
+ * the program, what the program writes is written to the standard output and
+ * error streams of the client, and the client exits with the exit status of
+ * the program.
+ *
+ * @input Standard input of the job.
+ * @output Standard output and error of the job.
+ * @options --host=NAME: host of the server, the loopback interface by default.
+ *          --port=N: port of the server, BatchServer.DEFAULT_PORT by default.
+ *          The first other argument names the program to run and the rest are
+ *          passed on to it.
+ *          The client exits with EXIT_BUSY if the server turned the job away,
+ *          so callers can retry later.
+ * @author Victor Hazali
+ */
+public class BatchClient {
+
+	/** Constant variables **/
+	// Exit status when the server is busy, EX_TEMPFAIL of sysexits.h
+	public static final int		EXIT_BUSY		= 75;
+	private static final int	EXIT_USAGE		= 64;
+	private static final int	BUFFER_SIZE		= 1 << 16;
+	private static final String	HOST_OPTION		= "--host=";
+	private static final String	PORT_OPTION		= "--port=";
+
+	/** Output Strings **/
+	private static final String	USAGE			= "Usage: BatchClient [--host=NAME] [--port=N] program [args...]";
+	private static final String	SERVER_BUSY		= "Server busy, try again later";
+
+	/** Member Variables **/
+	private String				_host;
+	private int					_port;
+
+	/* Constructor */
+
+	public BatchClient() {
+		setHost(null);
+		setPort(BatchServer.DEFAULT_PORT);
+	}
+
+	/* Accessors and Modifiers */
+
+	public String getHost() {
+		return _host;
+	}
+
+	public void setHost(String host) {
+		_host = host;
+	}
+
+	public int getPort() {
+		return _port;
+	}
+
+	public void setPort(int port) {
+		_port = port;
+	}
+
+	/* Public Methods */
+
+	/**
+	 * Runs a job on the server and copies its output to the streams of this
+	 * process.
+	 *
+	 * @param program
+	 *            name of the program to run
+	 * @param args
+	 *            arguments of the program
+	 * @param input
+	 *            standard input of the program
+	 * @return exit status of the program, or EXIT_BUSY if the server turned
+	 *         the job away
+	 * @throws IOException
+	 *             when the server cannot be reached
+	 */
+	public int run(String program, String[] args, byte[] input)
+			throws IOException {
+		Socket socket = new Socket(getHost(), getPort());
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(
+					socket.getInputStream()));
+			if (in.read() != BatchServer.ADMITTED) {
+				System.err.println(SERVER_BUSY);
+				return EXIT_BUSY;
+			}
+
+			DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(socket.getOutputStream()));
+			out.writeUTF(program);
+			out.writeInt(args.length);
+			for (String arg : args) {
+				out.writeUTF(arg);
+			}
+			out.writeInt(input.length);
+			out.write(input);
+			out.flush();
+
+			int status = in.readInt();
+			copy(in, System.out);
+			copy(in, System.err);
+			return status;
+		} finally {
+			socket.close();
+		}
+	}
+
+	/* Private Methods */
+
+	/**
+	 * Copies a length prefixed block of bytes from the server to a stream.
+	 */
+	private static void copy(DataInputStream in, OutputStream out)
+			throws IOException {
+		byte[] buffer = new byte[BUFFER_SIZE];
+		int remaining = in.readInt();
+		while (remaining > 0) {
+			int read = in.read(buffer, 0, Math.min(buffer.length, remaining));
+			if (read < 0) {
+				throw new IOException();
+			}
+			out.write(buffer, 0, read);
+			remaining -= read;
+		}
+		out.flush();
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[BUFFER_SIZE];
+		int read;
+		while ((read = in.read(buffer)) >= 0) {
+			bytes.write(buffer, 0, read);
+		}
+		return bytes.toByteArray();
+	}
+
+	public static void main(String[] args) throws IOException {
+		BatchClient client = new BatchClient();
+		int first = 0;
+		while (first < args.length && args[first].startsWith("--")) {
+			if (args[first].startsWith(HOST_OPTION)) {
+				client.setHost(args[first].substring(HOST_OPTION.length()));
+			} else if (args[first].startsWith(PORT_OPTION)) {
+				client.setPort(Integer.parseInt(args[first]
+						.substring(PORT_OPTION.length())));
+			} else {
+				break;
+			}
+			first++;
+		}
+		if (first == args.length) {
+			System.err.println(USAGE);
+			System.exit(EXIT_USAGE);
+		}
+
+		String[] programArgs = new String[args.length - first - 1];
+		System.arraycopy(args, first + 1, programArgs, 0, programArgs.length);
+		System.exit(client.run(args[first], programArgs, readAll(System.in)));
+	}
+}
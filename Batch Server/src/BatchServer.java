@@ -0,0 +1,418 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class keeps the command line programs of all assignments loaded in one
+ * long running JVM, so a small job neither starts a JVM nor runs cold code.
+ * A job names a program, its arguments and its standard input, and gets back
+ * what the program wrote to its standard output and error streams together
+ * with its exit status. BatchClient sends a single job from the command line.
+ *
+ * Each class path directory is loaded by its own class loader, since the
+ * assignments share class names such as Vertex. Every job calls the static
+ * run(InputStream, PrintStream, String[]) method of its program on warm
+ * classes, which takes the place of main: it reads and writes the streams it
+ * is given and returns the exit status instead of calling System.exit. The
+ * server does not start unless every program in PROGRAMS is found with such a
+ * method. System.out and System.err are routed to the streams of the job as
+ * well, for the thread running it and any thread it starts, so diagnostics
+ * end up with the job that wrote them.
+ *
+ * The bin directories committed with the assignments hold classes from before
+ * the run methods, so the programs are compiled before starting the server:
+ *
+ * <pre>
+ * javac -d classes/pa1 "Programming Assignment 1/src/"*.java
+ * javac -d classes/pa2 "Programming Assignment 2/src/"*.java
+ * javac -d classes/pa2c "Programming Assignment 2C/src/"*.java
+ * javac -d classes/server "Batch Server/src/"*.java
+ * java -cp classes/server BatchServer classes/pa1 classes/pa2 classes/pa2c
+ * </pre>
+ *
+ * @input The server listens on the loopback interface only. After accepting a
+ *        connection it writes one byte, ADMITTED or BUSY. An admitted client
+ *        then writes its job:
+ *
+ *        <pre>
+ * UTF    name of the program, e.g. SpaceshipMomentum
+ * int    number of arguments, followed by each argument as UTF
+ * int    length of the standard input, followed by its bytes
+ * </pre>
+ * @output For an admitted job, the server writes the exit status of the
+ *         program (STATUS_UNKNOWN if no program of that name is loaded), then
+ *         the length and bytes of the standard output, then the length and
+ *         bytes of the standard error. All integers are big endian.
+ * @options --port=N: port to listen on, DEFAULT_PORT by default.
+ *          --max-concurrency=N: number of jobs running at the same time, the
+ *          number of processors by default. Each job runs on its own thread.
+ *          --queue=N: number of admitted jobs waiting for a thread, beyond
+ *          which connections are answered with BUSY. DEFAULT_QUEUE by
+ *          default.
+ *          Any other argument is a class path directory to load programs
+ *          from, at least one being required.
+ * @author Victor Hazali
+ */
+public class BatchServer {
+
+	/** Constant variables **/
+	public static final int			DEFAULT_PORT		= 7312;
+	public static final int			ADMITTED			= 0;
+	public static final int			BUSY				= 1;
+	// Exit status reported for a job naming a program that is not loaded
+	public static final int			STATUS_UNKNOWN		= 127;
+	// Exit status reported for a job failing with an exception
+	private static final int		STATUS_FAILED		= 1;
+	private static final int		EXIT_USAGE			= 64;
+	private static final int		DEFAULT_QUEUE		= 16;
+	// Connections waiting to be accepted
+	private static final int		BACKLOG				= 64;
+	private static final String[]	PROGRAMS			= {
+			"SpaceshipMomentum", "PA1ABC", "LargeMultiply", "Verifier",
+			"GraphReductor", "Transformation"			};
+	private static final String		PORT_OPTION			= "--port=";
+	private static final String		CONCURRENCY_OPTION	= "--max-concurrency=";
+	private static final String		QUEUE_OPTION		= "--queue=";
+
+	/** Output Strings **/
+	private static final String		LISTENING			= "Listening on port %d with %d jobs at a time and %d waiting, programs: %s";
+	private static final String		UNKNOWN_PROGRAM		= "No program named ";
+	private static final String		USAGE				= "Usage: BatchServer [--port=N] [--max-concurrency=N] [--queue=N] classpath...";
+	private static final String		NOT_LOADED			= "Cannot load programs: %s";
+	private static final String		NOT_FOUND			= "%s not found";
+	private static final String		NO_RUN_METHOD		= "%s has no run(InputStream, PrintStream, String[])";
+
+	/** Member Variables **/
+	// Streams of the job running on each thread, inherited by its threads
+	private static final InheritableThreadLocal<OutputStream>	JOB_OUT	= new InheritableThreadLocal<OutputStream>();
+	private static final InheritableThreadLocal<OutputStream>	JOB_ERR	= new InheritableThreadLocal<OutputStream>();
+	private int							_port;
+	private int							_maxConcurrency;
+	private int							_queueSize;
+	private List<File>					_classPaths;
+	private Map<String, Method>			_programs;
+	private ThreadPoolExecutor			_executor;
+
+	/* Constructor */
+
+	public BatchServer() {
+		setPort(DEFAULT_PORT);
+		setMaxConcurrency(Runtime.getRuntime().availableProcessors());
+		setQueueSize(DEFAULT_QUEUE);
+		_classPaths = new ArrayList<File>();
+		_programs = new HashMap<String, Method>();
+	}
+
+	/* Accessors and Modifiers */
+
+	public int getPort() {
+		return _port;
+	}
+
+	public void setPort(int port) {
+		_port = port;
+	}
+
+	public int getMaxConcurrency() {
+		return _maxConcurrency;
+	}
+
+	public void setMaxConcurrency(int maxConcurrency) {
+		_maxConcurrency = maxConcurrency;
+	}
+
+	public int getQueueSize() {
+		return _queueSize;
+	}
+
+	public void setQueueSize(int queueSize) {
+		_queueSize = queueSize;
+	}
+
+	public void addClassPath(File directory) {
+		_classPaths.add(directory);
+	}
+
+	/* Public Methods */
+
+	/**
+	 * Loads the programs and serves jobs until the JVM is stopped.
+	 *
+	 * @throws IOException
+	 *             when the server socket cannot be opened
+	 * @throws IllegalStateException
+	 *             when a program is missing from the class path directories
+	 */
+	public void run() throws IOException {
+		loadPrograms();
+		routeStandardStreams();
+
+		_executor = new ThreadPoolExecutor(getMaxConcurrency(),
+				getMaxConcurrency(), 0, TimeUnit.MILLISECONDS,
+				getQueueSize() == 0 ? new SynchronousQueue<Runnable>()
+						: new ArrayBlockingQueue<Runnable>(getQueueSize()));
+		ServerSocket server = new ServerSocket(getPort(), BACKLOG,
+				InetAddress.getByName(null));
+		System.err.println(String.format(LISTENING, getPort(),
+				getMaxConcurrency(), getQueueSize(), _programs.keySet()));
+
+		while (true) {
+			final Socket connection = server.accept();
+			try {
+				_executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						serve(connection);
+					}
+				});
+				admit(connection, ADMITTED);
+			} catch (RejectedExecutionException e) {
+				// Every thread is busy and the queue is full
+				admit(connection, BUSY);
+				close(connection);
+			}
+		}
+	}
+
+	/* Private Methods */
+
+	/**
+	 * Loads the run method of every program from the first class path
+	 * directory holding it, each directory having a class loader of its own.
+	 *
+	 * @throws IllegalStateException
+	 *             naming every program not found, or found without a run
+	 *             method, in any of the directories
+	 */
+	private void loadPrograms() throws IOException {
+		// The platform classes only, so no program is loaded by a parent
+		ClassLoader parent = ClassLoader.getSystemClassLoader().getParent();
+		Map<String, String> failures = new HashMap<String, String>();
+		for (File directory : _classPaths) {
+			ClassLoader loader = new URLClassLoader(new URL[] { directory
+					.toURI().toURL() }, parent);
+			for (String program : PROGRAMS) {
+				if (_programs.containsKey(program)) {
+					continue;
+				}
+				try {
+					Method run = loader.loadClass(program).getDeclaredMethod(
+							"run", InputStream.class, PrintStream.class,
+							String[].class);
+					// Some programs are not public classes
+					run.setAccessible(true);
+					_programs.put(program, run);
+				} catch (ClassNotFoundException e) {
+					if (!failures.containsKey(program)) {
+						failures.put(program, String.format(NOT_FOUND, program));
+					}
+				} catch (NoSuchMethodException e) {
+					failures.put(program, String.format(NO_RUN_METHOD, program));
+				}
+			}
+		}
+
+		List<String> missing = new ArrayList<String>();
+		for (String program : PROGRAMS) {
+			if (!_programs.containsKey(program)) {
+				missing.add(failures.containsKey(program) ? failures
+						.get(program) : String.format(NOT_FOUND, program));
+			}
+		}
+		if (!missing.isEmpty()) {
+			throw new IllegalStateException(String.format(NOT_LOADED, missing));
+		}
+	}
+
+	/**
+	 * Replaces the standard output and error streams with ones passing
+	 * everything on to the streams of the job running on the current thread,
+	 * or to the original streams outside of jobs.
+	 */
+	private void routeStandardStreams() {
+		System.setOut(new RoutedPrintStream(JOB_OUT, System.out));
+		System.setErr(new RoutedPrintStream(JOB_ERR, System.err));
+	}
+
+	/**
+	 * Reads a job from a connection, runs it and writes back its results.
+	 */
+	private void serve(Socket connection) {
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(
+					connection.getInputStream()));
+			String program = in.readUTF();
+			String[] args = new String[in.readInt()];
+			for (int i = 0; i < args.length; i++) {
+				args[i] = in.readUTF();
+			}
+			byte[] input = new byte[in.readInt()];
+			in.readFully(input);
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			ByteArrayOutputStream err = new ByteArrayOutputStream();
+			int status;
+			Method run = _programs.get(program);
+			if (run == null) {
+				err.write((UNKNOWN_PROGRAM + program + "\n").getBytes());
+				status = STATUS_UNKNOWN;
+			} else {
+				status = runJob(run, args, input, out, err);
+			}
+
+			DataOutputStream reply = new DataOutputStream(
+					new BufferedOutputStream(connection.getOutputStream()));
+			reply.writeInt(status);
+			reply.writeInt(out.size());
+			out.writeTo(reply);
+			reply.writeInt(err.size());
+			err.writeTo(reply);
+			reply.flush();
+		} catch (IOException e) {
+			// The client went away, nothing to reply to
+		} finally {
+			close(connection);
+		}
+	}
+
+	/**
+	 * Runs the run method of a program with the streams of a job.
+	 *
+	 * @return the exit status returned by the program, or STATUS_FAILED if it
+	 *         threw
+	 */
+	private int runJob(Method run, String[] args, byte[] input,
+			OutputStream out, OutputStream err) {
+		PrintStream output = new PrintStream(out);
+		JOB_OUT.set(out);
+		JOB_ERR.set(err);
+		try {
+			return (Integer) run.invoke(null, new ByteArrayInputStream(input),
+					output, args);
+		} catch (InvocationTargetException e) {
+			e.getCause().printStackTrace(System.err);
+			return STATUS_FAILED;
+		} catch (IllegalAccessException e) {
+			e.printStackTrace(System.err);
+			return STATUS_FAILED;
+		} finally {
+			output.flush();
+			System.out.flush();
+			System.err.flush();
+			JOB_OUT.remove();
+			JOB_ERR.remove();
+		}
+	}
+
+	private void admit(Socket connection, int decision) {
+		try {
+			OutputStream out = connection.getOutputStream();
+			out.write(decision);
+			out.flush();
+		} catch (IOException e) {
+			close(connection);
+		}
+	}
+
+	private void close(Socket connection) {
+		try {
+			connection.close();
+		} catch (IOException e) {
+			// Already closed
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		BatchServer server = new BatchServer();
+		int classPaths = 0;
+		for (String arg : args) {
+			if (arg.startsWith(PORT_OPTION)) {
+				server.setPort(Integer.parseInt(arg.substring(PORT_OPTION
+						.length())));
+			} else if (arg.startsWith(CONCURRENCY_OPTION)) {
+				server.setMaxConcurrency(Integer.parseInt(arg
+						.substring(CONCURRENCY_OPTION.length())));
+			} else if (arg.startsWith(QUEUE_OPTION)) {
+				server.setQueueSize(Integer.parseInt(arg.substring(QUEUE_OPTION
+						.length())));
+			} else {
+				server.addClassPath(new File(arg));
+				classPaths++;
+			}
+		}
+		if (classPaths == 0) {
+			System.err.println(USAGE);
+			System.exit(EXIT_USAGE);
+		}
+
+		try {
+			server.run();
+		} catch (IllegalStateException e) {
+			System.err.println(e.getMessage());
+			System.exit(EXIT_USAGE);
+		}
+	}
+
+	/**
+	 * Standard output or error stream passing writes on to the stream of the
+	 * current job. Closing it only flushes it, as it is shared by all jobs.
+	 */
+	private static class RoutedPrintStream extends PrintStream {
+
+		public RoutedPrintStream(
+				final InheritableThreadLocal<OutputStream> route,
+				final OutputStream fallback) {
+			super(new OutputStream() {
+				@Override
+				public void write(int b) throws IOException {
+					target().write(b);
+				}
+
+				@Override
+				public void write(byte[] buffer, int offset, int length)
+						throws IOException {
+					target().write(buffer, offset, length);
+				}
+
+				@Override
+				public void flush() throws IOException {
+					target().flush();
+				}
+
+				private OutputStream target() {
+					OutputStream job = route.get();
+					return job == null ? fallback : job;
+				}
+			}, true);
+		}
+
+		@Override
+		public void close() {
+			flush();
+		}
+	}
+}
@@ -0,0 +1,339 @@
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * This class plans the evaluation of the T pairs against the running time
+ * allowed for each pair. The cost of a pair is estimated from the lengths of
+ * its operands with one simple model per engine: multiplying a long number of
+ * length L by a short one of length S costs rate * (L / S) * S^exponent
+ * nanoseconds, which gives L * S for the quadratic long multiplication and
+ * about L * S^0.585 for Karatsuba. Engines multiplying through a transform of
+ * length N = L + S cost rate * N * log2(N) nanoseconds instead. An engine that
+ * cannot multiply a pair, such as a transform whose modulus is too small for
+ * it, can be excluded for that pair.
+ *
+ * Before any work starts, each pair is admitted to the preferred engine if its
+ * estimate fits into the budget, sent to the fastest engine if only that one
+ * fits, or rejected if even the fastest engine is estimated to overrun the
+ * budget by more than REJECT_MARGIN. After each pair the rate of its engine is
+ * corrected by the time the pair actually took, and each pair is admitted
+ * again with the corrected rates just before it is evaluated, so the decisions
+ * for the remaining pairs improve as the run goes on.
+ *
+ * @author Victor Hazali
+ */
+public class BudgetScheduler {
+
+	/** Constant variables **/
+	// Engine assigned to a pair that will not be evaluated
+	public static final int		REJECTED		= -1;
+	// Factor by which an estimate may exceed the budget before rejection
+	private static final double	REJECT_MARGIN	= 2.0;
+	// Weight of the latest measurement when correcting the rate of an engine
+	private static final double	LEARNING_RATE	= 0.5;
+	private static final double	NANOS_PER_MILLI	= 1000000.0;
+	private static final String	REPORT_FORMAT	= "pair %d: %s, estimated %.1f ms, actual %.1f ms, budget %.1f ms, %s";
+	private static final String	MET				= "met";
+	private static final String	MISSED			= "MISSED";
+	private static final String	REJECTED_NAME	= "rejected";
+
+	/** Member Variables **/
+	private long				_budget;
+	private List<String>		_names;
+	private List<Double>		_exponents;
+	private List<Double>		_rates;
+	private List<Boolean>		_transforms;
+	private int[]				_engines;
+	private long[]				_excluded;
+	private long[]				_estimates;
+	private long[]				_actuals;
+
+	/* Constructor */
+
+	/**
+	 * Creates a scheduler allowing the given time for each pair.
+	 *
+	 * @param budget
+	 *            running time allowed per pair, in nanoseconds
+	 */
+	public BudgetScheduler(long budget) {
+		_budget = budget;
+		_names = new ArrayList<String>();
+		_exponents = new ArrayList<Double>();
+		_rates = new ArrayList<Double>();
+		_transforms = new ArrayList<Boolean>();
+		_engines = new int[0];
+		_excluded = new long[0];
+		_estimates = new long[0];
+		_actuals = new long[0];
+	}
+
+	/* Accessors and Modifiers */
+
+	public long getBudget() {
+		return _budget;
+	}
+
+	public int getEngine(int pair) {
+		return _engines[pair];
+	}
+
+	public long getEstimate(int pair) {
+		return _estimates[pair];
+	}
+
+	/**
+	 * Registers an engine with its cost model.
+	 *
+	 * @param name
+	 *            name of the engine, used in the report
+	 * @param exponent
+	 *            growth of the cost for balanced operands, 2 for quadratic
+	 * @param rate
+	 *            nanoseconds per unit of cost
+	 * @return the number identifying the engine
+	 */
+	public int addEngine(String name, double exponent, double rate) {
+		_names.add(name);
+		_exponents.add(exponent);
+		_rates.add(rate);
+		_transforms.add(false);
+		return _names.size() - 1;
+	}
+
+	/**
+	 * Registers an engine multiplying through a transform, whose cost grows
+	 * as N * log2(N) in the combined length N of the operands.
+	 *
+	 * @param name
+	 *            name of the engine, used in the report
+	 * @param rate
+	 *            nanoseconds per unit of cost
+	 * @return the number identifying the engine
+	 */
+	public int addTransformEngine(String name, double rate) {
+		int engine = addEngine(name, 1, rate);
+		_transforms.set(engine, true);
+		return engine;
+	}
+
+	/* Public Methods */
+
+	/**
+	 * Estimates the running time of a multiplication.
+	 *
+	 * @param engine
+	 *            engine doing the multiplication
+	 * @param vLen
+	 *            number of digits of the first operand
+	 * @param mLen
+	 *            number of digits of the second operand
+	 * @return the estimated running time, in nanoseconds
+	 */
+	public synchronized long estimate(int engine, int vLen, int mLen) {
+		if (_transforms.get(engine)) {
+			double length = Math.max(2, (double) vLen + mLen);
+			return (long) (_rates.get(engine) * length * Math.log(length)
+					/ Math.log(2));
+		}
+		double shorter = Math.max(1, Math.min(vLen, mLen));
+		double longer = Math.max(1, Math.max(vLen, mLen));
+		return (long) (_rates.get(engine) * longer / shorter * Math.pow(
+				shorter, _exponents.get(engine)));
+	}
+
+	/**
+	 * Decides which engine, if any, a multiplication is admitted to.
+	 *
+	 * @param vLen
+	 *            number of digits of the first operand
+	 * @param mLen
+	 *            number of digits of the second operand
+	 * @param preferred
+	 *            engine to use if it fits into the budget
+	 * @return the engine to use, or REJECTED
+	 */
+	public int admit(int vLen, int mLen, int preferred) {
+		return admit(vLen, mLen, preferred, 0);
+	}
+
+	/**
+	 * Decides which engine, if any, a multiplication is admitted to, without
+	 * considering the excluded engines.
+	 *
+	 * @param vLen
+	 *            number of digits of the first operand
+	 * @param mLen
+	 *            number of digits of the second operand
+	 * @param preferred
+	 *            engine to use if it fits into the budget, must not be
+	 *            excluded
+	 * @param excluded
+	 *            mask with bit e set if engine e cannot be used
+	 * @return the engine to use, or REJECTED
+	 */
+	public int admit(int vLen, int mLen, int preferred, long excluded) {
+		if (estimate(preferred, vLen, mLen) <= getBudget()) {
+			return preferred;
+		}
+
+		int fastest = fastest(vLen, mLen, preferred, excluded);
+		if (estimate(fastest, vLen, mLen) > getBudget() * REJECT_MARGIN) {
+			return REJECTED;
+		}
+		return fastest;
+	}
+
+	/**
+	 * Admits all pairs and remembers their engines and estimates.
+	 *
+	 * @param vLens
+	 *            number of digits of the first operand of each pair
+	 * @param mLens
+	 *            number of digits of the second operand of each pair
+	 * @param preferred
+	 *            engine to use for pairs fitting into the budget
+	 * @return the engine assigned to each pair, REJECTED for rejected pairs
+	 */
+	public int[] plan(int[] vLens, int[] mLens, int preferred) {
+		int[] preferreds = new int[vLens.length];
+		Arrays.fill(preferreds, preferred);
+		return plan(vLens, mLens, preferreds, new long[vLens.length]);
+	}
+
+	/**
+	 * Admits all pairs, each with its own preferred engine and the engines
+	 * that cannot multiply it, and remembers their engines and estimates.
+	 *
+	 * @param vLens
+	 *            number of digits of the first operand of each pair
+	 * @param mLens
+	 *            number of digits of the second operand of each pair
+	 * @param preferreds
+	 *            engine to use for each pair if it fits into the budget
+	 * @param excluded
+	 *            mask for each pair with bit e set if engine e cannot be used
+	 *            for it
+	 * @return the engine assigned to each pair, REJECTED for rejected pairs
+	 */
+	public int[] plan(int[] vLens, int[] mLens, int[] preferreds,
+			long[] excluded) {
+		_engines = new int[vLens.length];
+		_estimates = new long[vLens.length];
+		_actuals = new long[vLens.length];
+		_excluded = excluded.clone();
+		for (int pair = 0; pair < vLens.length; pair++) {
+			readmit(pair, vLens[pair], mLens[pair], preferreds[pair]);
+		}
+		return _engines;
+	}
+
+	/**
+	 * Admits a planned pair again, just before it is evaluated, with the rates
+	 * corrected by the pairs evaluated so far. Engines excluded for the pair
+	 * when it was planned are not considered.
+	 *
+	 * @param pair
+	 *            index of the pair
+	 * @param vLen
+	 *            number of digits of the first operand
+	 * @param mLen
+	 *            number of digits of the second operand
+	 * @param preferred
+	 *            engine to use if it fits into the budget
+	 * @return the engine to use, or REJECTED
+	 */
+	public synchronized int readmit(int pair, int vLen, int mLen, int preferred) {
+		_engines[pair] = admit(vLen, mLen, preferred, _excluded[pair]);
+		// Rejected pairs are reported with the best estimate they had
+		int engine = _engines[pair] == REJECTED ? fastest(vLen, mLen,
+				preferred, _excluded[pair]) : _engines[pair];
+		_estimates[pair] = estimate(engine, vLen, mLen);
+		return _engines[pair];
+	}
+
+	/**
+	 * Orders the planned pairs for evaluation. A single thread evaluates them
+	 * in input order, which is earliest deadline first. Several threads take
+	 * the longest estimated pairs first, so no thread is left with a long pair
+	 * at the end while the others are idle.
+	 *
+	 * @param threads
+	 *            number of threads evaluating the pairs
+	 * @return the indices of the pairs in the order they should be started
+	 */
+	public Integer[] order(int threads) {
+		Integer[] order = new Integer[_engines.length];
+		for (int pair = 0; pair < order.length; pair++) {
+			order[pair] = pair;
+		}
+		if (threads > 1) {
+			Arrays.sort(order, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer first, Integer second) {
+					return Long.compare(_estimates[second], _estimates[first]);
+				}
+			});
+		}
+		return order;
+	}
+
+	/**
+	 * Records the time a pair actually took and corrects the rate of its
+	 * engine towards it.
+	 *
+	 * @param pair
+	 *            index of the pair
+	 * @param actual
+	 *            running time of the pair, in nanoseconds
+	 */
+	public synchronized void record(int pair, long actual) {
+		_actuals[pair] = actual;
+		int engine = _engines[pair];
+		if (engine == REJECTED || _estimates[pair] <= 0) {
+			return;
+		}
+		double ratio = (double) actual / _estimates[pair];
+		_rates.set(engine, _rates.get(engine)
+				* (1 - LEARNING_RATE + LEARNING_RATE * ratio));
+	}
+
+	/**
+	 * Writes the estimated and actual running time of every planned pair.
+	 *
+	 * @param out
+	 *            the stream to write the report to
+	 */
+	public void report(PrintStream out) {
+		for (int pair = 0; pair < _engines.length; pair++) {
+			int engine = _engines[pair];
+			String outcome = _actuals[pair] <= getBudget() ? MET : MISSED;
+			out.println(String.format(REPORT_FORMAT, pair + 1,
+					engine == REJECTED ? REJECTED_NAME : _names.get(engine),
+					_estimates[pair] / NANOS_PER_MILLI, _actuals[pair]
+							/ NANOS_PER_MILLI, getBudget() / NANOS_PER_MILLI,
+					engine == REJECTED ? REJECTED_NAME : outcome));
+		}
+	}
+
+	/* Private Methods */
+
+	/**
+	 * Finds the engine with the lowest estimate among those not excluded,
+	 * preferring the given one among equals.
+	 */
+	private int fastest(int vLen, int mLen, int preferred, long excluded) {
+		int fastest = preferred;
+		for (int engine = 0; engine < _names.size(); engine++) {
+			if ((excluded & 1L << engine) == 0
+					&& estimate(engine, vLen, mLen) < estimate(fastest, vLen,
+							mLen)) {
+				fastest = engine;
+			}
+		}
+		return fastest;
+	}
+}
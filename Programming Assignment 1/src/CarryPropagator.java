@@ -0,0 +1,215 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class resolves the carries of long runs of column sums in parallel.
+ * Carry propagation looks strictly serial, since every digit depends on the
+ * carry out of the digit below it, but it can be split into three parallel
+ * passes over chunks of CHUNK_SIZE columns:
+ *
+ * <pre>
+ * 1. Each chunk is normalized on its own, as if no carry came in, and its
+ *    carry out is kept.
+ * 2. Each chunk adds the carry out of the chunk below into its lowest digits.
+ *    The ripple can only run off the top of the chunk if all digits above
+ *    become zero, which generates a carry of one into the next chunk. A chunk
+ *    whose digits are now all B-1 would propagate such a carry.
+ * 3. After a scan over the chunks combining these generate and propagate
+ *    flags, every chunk receiving a carry of one adds it in.
+ * </pre>
+ *
+ * This relies on the carry out of a chunk being far below B^CHUNK_SIZE, which
+ * holds for any column sums fitting into a long. Short runs are normalized
+ * serially. The tasks run on one pool shared by all callers.
+ *
+ * @author Victor Hazali
+ */
+public class CarryPropagator {
+
+	/** Constant variables **/
+	// Number of columns normalized by one task
+	private static final int			CHUNK_SIZE			= 1 << 16;
+	// Runs shorter than this are normalized serially
+	private static final int			PARALLEL_THRESHOLD	= 1 << 20;
+	private static final int			LOCAL				= 0;
+	private static final int			ABSORB				= 1;
+	private static final int			FIX_UP				= 2;
+	private static final ForkJoinPool	POOL				= new ForkJoinPool();
+
+	/** Member Variables **/
+	private long[]						_columns;
+	private int[]						_result;
+	private int							_from;
+	private int							_to;
+	private int							_base;
+	private RadixDivider				_divider;
+	// Carry out of each chunk after the local pass
+	private long[]						_carries;
+	// Carry generated by each chunk when absorbing the one below it
+	private long[]						_generated;
+	// Whether each chunk propagates an incoming carry of one
+	private boolean[]					_propagates;
+	// Carry coming into each chunk in the fix-up pass
+	private long[]						_incoming;
+
+	/* Constructor */
+
+	private CarryPropagator(int[] result, int from, int to, int base) {
+		_result = result;
+		_from = from;
+		_to = to;
+		_base = base;
+		_divider = RadixDivider.forBase(base);
+		int chunks = (to - from + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		_carries = new long[chunks];
+		_generated = new long[chunks];
+		_propagates = new boolean[chunks];
+		_incoming = new long[chunks + 1];
+	}
+
+	/* Accessors */
+
+	/**
+	 * Returns the fork/join pool shared by all parallel passes over digits.
+	 */
+	public static ForkJoinPool getPool() {
+		return POOL;
+	}
+
+	/* Public Methods */
+
+	/**
+	 * Normalizes the column sums columns[from] to columns[to - 1] into the
+	 * digits result[from] to result[to - 1].
+	 *
+	 * @param columns
+	 *            column sums, none of them negative
+	 * @param result
+	 *            array to store the digits in, may not be columns
+	 * @param from
+	 *            first column to normalize
+	 * @param to
+	 *            column after the last one to normalize
+	 * @param base
+	 *            radix base of the digits
+	 * @return the carry out of the last column
+	 */
+	public static long normalize(long[] columns, int[] result, int from,
+			int to, int base) {
+		if (to - from < PARALLEL_THRESHOLD) {
+			RadixDivider divider = RadixDivider.forBase(base);
+			long carry = 0, quotient;
+			for (int index = from; index < to; index++) {
+				carry += columns[index];
+				quotient = divider.quotient(carry);
+				result[index] = (int) (carry - quotient * base);
+				carry = quotient;
+			}
+			return carry;
+		}
+
+		CarryPropagator job = new CarryPropagator(result, from, to, base);
+		job._columns = columns;
+		return job.run();
+	}
+
+	/* Private Methods */
+
+	/**
+	 * Runs the three passes and returns the carry out of the last column.
+	 */
+	private long run() {
+		int chunks = _carries.length;
+		POOL.invoke(new ChunkTask(this, LOCAL, 0, chunks));
+		if (chunks > 1) {
+			POOL.invoke(new ChunkTask(this, ABSORB, 1, chunks));
+		}
+
+		// Scanning the generate and propagate flags
+		for (int chunk = 0; chunk < chunks; chunk++) {
+			_incoming[chunk + 1] = _generated[chunk]
+					+ (_propagates[chunk] ? _incoming[chunk] : 0);
+		}
+		POOL.invoke(new ChunkTask(this, FIX_UP, 1, chunks));
+
+		return _carries[chunks - 1] + _incoming[chunks];
+	}
+
+	/**
+	 * Runs one pass over one chunk.
+	 */
+	private void runChunk(int phase, int chunk) {
+		int start = _from + chunk * CHUNK_SIZE;
+		int end = Math.min(start + CHUNK_SIZE, _to);
+
+		if (phase == LOCAL) {
+			long carry = 0, quotient;
+			for (int index = start; index < end; index++) {
+				carry += _columns[index];
+				quotient = _divider.quotient(carry);
+				_result[index] = (int) (carry - quotient * _base);
+				carry = quotient;
+			}
+			_carries[chunk] = carry;
+		} else if (phase == ABSORB) {
+			_generated[chunk] = ripple(_carries[chunk - 1], start, end);
+			_propagates[chunk] = true;
+			for (int index = start; index < end && _propagates[chunk]; index++) {
+				_propagates[chunk] = _result[index] == _base - 1;
+			}
+		} else if (_incoming[chunk] != 0) {
+			ripple(_incoming[chunk], start, end);
+		}
+	}
+
+	/**
+	 * Adds a carry into the digits from start onwards, stopping as soon as no
+	 * carry is left.
+	 *
+	 * @return the carry left over at the end of the digits
+	 */
+	private long ripple(long carry, int start, int end) {
+		long quotient;
+		for (int index = start; index < end && carry != 0; index++) {
+			carry += _result[index];
+			quotient = _divider.quotient(carry);
+			_result[index] = (int) (carry - quotient * _base);
+			carry = quotient;
+		}
+		return carry;
+	}
+
+	/**
+	 * Runs one pass over a range of chunks, splitting it in halves until a
+	 * single chunk is left.
+	 */
+	private static class ChunkTask extends RecursiveAction {
+
+		private static final long	serialVersionUID	= 1L;
+
+		private CarryPropagator		_job;
+		private int					_phase;
+		private int					_low;
+		private int					_high;
+
+		public ChunkTask(CarryPropagator job, int phase, int low, int high) {
+			_job = job;
+			_phase = phase;
+			_low = low;
+			_high = high;
+		}
+
+		@Override
+		protected void compute() {
+			if (_high - _low <= 1) {
+				if (_low < _high) {
+					_job.runChunk(_phase, _low);
+				}
+				return;
+			}
+			int mid = (_low + _high) >>> 1;
+			invokeAll(new ChunkTask(_job, _phase, _low, mid), new ChunkTask(
+					_job, _phase, mid, _high));
+		}
+	}
+}
@@ -0,0 +1,157 @@
+/**
+ * This class computes linear convolutions of integer sequences. Element k of
+ * the convolution of a and b is the sum of a[i] * b[j] over all i + j = k.
+ * Multiplying two numbers is exactly this followed by carry propagation, so
+ * the convolutions use the same algorithms as the multiplication engine, but
+ * no carries are ever resolved and the elements need not be digits of any
+ * base. Sequences are plain arrays, element 0 first, without a length index.
+ *
+ * Sequences are convolved with the column sum kernel of the Karatsuba
+ * multiplication, SpaceshipMomentum.karatsubaColumns, which works on plain
+ * sequences and leaves the carries to its callers. Long sequences whose
+ * convolution stays below NttMultiplier.MOD are convolved with the number
+ * theoretic transform instead.
+ *
+ * The exact convolution is returned as longs, and it is exact whenever every
+ * element of the convolution fits into a long. The modular convolution
+ * reduces all elements as it goes, so it never overflows.
+ *
+ * @author Victor Hazali
+ */
+public class Convolver {
+
+	/** Constant variables **/
+	// Shortest sequences convolved with the transform where it is exact
+	private static final int	NTT_THRESHOLD	= 1024;
+	// Modulus standing for the exact convolution in the private methods
+	private static final long	EXACT			= SpaceshipMomentum.EXACT;
+	private static final String	MODULUS_ERROR	= "Modulus must be positive: ";
+
+	/* Public Methods */
+
+	/**
+	 * Computes the exact linear convolution of two sequences.
+	 *
+	 * @param a
+	 *            first sequence
+	 * @param b
+	 *            second sequence
+	 * @return the a.length + b.length - 1 elements of the convolution, or an
+	 *         empty array if either sequence is empty. Elements that do not
+	 *         fit into a long are only correct modulo 2^64
+	 */
+	public static long[] convolve(int[] a, int[] b) {
+		if (a.length == 0 || b.length == 0) {
+			return new long[0];
+		}
+
+		if (Math.min(a.length, b.length) >= NTT_THRESHOLD && min(a) >= 0
+				&& min(b) >= 0
+				&& NttMultiplier.supports(a.length, b.length, max(a), max(b))) {
+			int[] sums = NttMultiplier.convolve(a, 0, a.length, b, 0, b.length);
+			long[] result = new long[a.length + b.length - 1];
+			for (int k = 0; k < result.length; k++) {
+				result[k] = sums[k];
+			}
+			return result;
+		}
+
+		return SpaceshipMomentum.karatsubaColumns(toLongs(a, EXACT), 0,
+				a.length, toLongs(b, EXACT), 0, b.length, EXACT);
+	}
+
+	/**
+	 * Computes the linear convolution of two sequences modulo a number.
+	 *
+	 * @param a
+	 *            first sequence
+	 * @param b
+	 *            second sequence
+	 * @param modulus
+	 *            the modulus, which must be positive
+	 * @return the a.length + b.length - 1 elements of the convolution, each
+	 *         reduced into [0, modulus), or an empty array if either sequence
+	 *         is empty
+	 * @throws IllegalArgumentException
+	 *             if the modulus is not positive
+	 */
+	public static int[] convolve(int[] a, int[] b, int modulus)
+			throws IllegalArgumentException {
+		if (modulus <= 0) {
+			throw new IllegalArgumentException(MODULUS_ERROR + modulus);
+		}
+		if (a.length == 0 || b.length == 0) {
+			return new int[0];
+		}
+
+		long[] aResidues = toLongs(a, modulus);
+		long[] bResidues = toLongs(b, modulus);
+		int[] result = new int[a.length + b.length - 1];
+
+		// The transform works modulo its own prime, or exactly if the
+		// convolution of the residues stays below it
+		boolean ownPrime = modulus == NttMultiplier.MOD
+				&& NttMultiplier.supports(a.length, b.length, 0, 0);
+		if (Math.min(a.length, b.length) >= NTT_THRESHOLD
+				&& (ownPrime || NttMultiplier.supports(a.length, b.length,
+						modulus - 1, modulus - 1))) {
+			int[] sums = NttMultiplier.convolve(toInts(aResidues), 0, a.length,
+					toInts(bResidues), 0, b.length);
+			for (int k = 0; k < result.length; k++) {
+				result[k] = sums[k] % modulus;
+			}
+			return result;
+		}
+
+		long[] sums = SpaceshipMomentum.karatsubaColumns(aResidues, 0,
+				a.length, bResidues, 0, b.length, modulus);
+		for (int k = 0; k < result.length; k++) {
+			result[k] = (int) sums[k];
+		}
+		return result;
+	}
+
+	/* Private Methods */
+
+	/**
+	 * Copies a sequence into longs, reducing every element into [0, modulus)
+	 * unless the modulus is EXACT.
+	 */
+	private static long[] toLongs(int[] a, long modulus) {
+		long[] result = new long[a.length];
+		for (int i = 0; i < a.length; i++) {
+			result[i] = a[i];
+			if (modulus != EXACT) {
+				result[i] %= modulus;
+				if (result[i] < 0) {
+					result[i] += modulus;
+				}
+			}
+		}
+		return result;
+	}
+
+	private static int[] toInts(long[] a) {
+		int[] result = new int[a.length];
+		for (int i = 0; i < a.length; i++) {
+			result[i] = (int) a[i];
+		}
+		return result;
+	}
+
+	private static int min(int[] a) {
+		int min = Integer.MAX_VALUE;
+		for (int element : a) {
+			min = Math.min(min, element);
+		}
+		return min;
+	}
+
+	private static int max(int[] a) {
+		int max = Integer.MIN_VALUE;
+		for (int element : a) {
+			max = Math.max(max, element);
+		}
+		return max;
+	}
+}
@@ -0,0 +1,224 @@
+import java.nio.ByteBuffer;
+
+/**
+ * This class holds one number in the binary wire format of SpaceshipMomentum,
+ * which lets callers holding digits in memory skip rendering and parsing base-B
+ * text. A frame is laid out as follows, all integers being big endian:
+ *
+ * <pre>
+ * int   length of the rest of the frame, in bytes
+ * byte  radix base B, 2 to 36
+ * int   radix point offset: number of digits after the radix point, 0 if none
+ * int   number of digits
+ * bytes the digits, least significant first, packed into as few bits as hold
+ *       B - 1 (4 bits for base 10, 6 for base 36). Each byte is filled from
+ *       its lowest bit up and the last one is padded with zero bits.
+ * </pre>
+ *
+ * The digits are kept in the layout used by SpaceshipMomentum, in reverse
+ * order with the length stored in the first index, so they can be multiplied
+ * without any conversion.
+ *
+ * @author Victor Hazali
+ */
+public class DigitFrame {
+
+	/** Constant variables **/
+	// Index in int array storing length of number
+	private static final int	LEN_POS			= 0;
+	// Size of the length field in front of every frame
+	public static final int		HEADER_SIZE		= 4;
+	// Size of the radix, radix point offset and digit count fields
+	private static final int	FIELDS_SIZE		= 9;
+	private static final int	MIN_BASE		= 2;
+	private static final int	MAX_BASE		= Character.MAX_RADIX;
+	private static final String	BASE_ERROR		= "Invalid radix base in frame: ";
+	private static final String	DIGIT_ERROR		= "Invalid digit in frame: ";
+	private static final String	LENGTH_ERROR	= "Invalid length in frame: ";
+
+	/** Member Variables **/
+	private int					_base;
+	private int					_radixPos;
+	private int[]				_digits;
+
+	/* Constructor */
+
+	/**
+	 * Creates a frame for a number.
+	 *
+	 * @param base
+	 *            radix base B of the number
+	 * @param radixPos
+	 *            number of digits after the radix point, 0 if there is none
+	 * @param digits
+	 *            the digits, stored in reverse order with the length in the
+	 *            first index. The array is kept, not copied
+	 */
+	public DigitFrame(int base, int radixPos, int[] digits) {
+		setBase(base);
+		setRadixPos(radixPos);
+		setDigits(digits);
+	}
+
+	/* Accessors and Modifiers */
+
+	public int getBase() {
+		return _base;
+	}
+
+	public void setBase(int base) {
+		_base = base;
+	}
+
+	public int getRadixPos() {
+		return _radixPos;
+	}
+
+	public void setRadixPos(int radixPos) {
+		_radixPos = radixPos;
+	}
+
+	public int[] getDigits() {
+		return _digits;
+	}
+
+	public void setDigits(int[] digits) {
+		_digits = digits;
+	}
+
+	public int getLength() {
+		return _digits[LEN_POS];
+	}
+
+	/**
+	 * Returns the number of bytes write puts into a buffer for this frame,
+	 * including the length field.
+	 */
+	public int getFrameSize() {
+		return HEADER_SIZE + FIELDS_SIZE
+				+ packedSize(getLength(), bitsPerDigit(getBase()));
+	}
+
+	/* Public Methods */
+
+	/**
+	 * Returns the number of bytes the next frame in a buffer takes, including
+	 * the length field, without consuming anything.
+	 *
+	 * @param buffer
+	 *            buffer positioned at the start of a frame
+	 * @return size of the next frame, or HEADER_SIZE if not even its length
+	 *         field is in the buffer yet
+	 */
+	public static int nextFrameSize(ByteBuffer buffer) {
+		if (buffer.remaining() < HEADER_SIZE) {
+			return HEADER_SIZE;
+		}
+		return HEADER_SIZE + buffer.getInt(buffer.position());
+	}
+
+	/**
+	 * Reads the next frame from a buffer. Nothing is consumed unless the
+	 * whole frame is in the buffer, so a caller receiving the frames in pieces
+	 * can read more input and try again.
+	 *
+	 * @param buffer
+	 *            buffer positioned at the start of a frame
+	 * @return the frame, or null if the buffer does not hold all of it yet
+	 * @throws IllegalArgumentException
+	 *             if the frame is malformed
+	 */
+	public static DigitFrame read(ByteBuffer buffer)
+			throws IllegalArgumentException {
+		if (buffer.remaining() < HEADER_SIZE) {
+			return null;
+		}
+		int frameSize = nextFrameSize(buffer);
+		if (frameSize < HEADER_SIZE + FIELDS_SIZE) {
+			throw new IllegalArgumentException(LENGTH_ERROR + frameSize);
+		}
+		if (buffer.remaining() < frameSize) {
+			return null;
+		}
+
+		int end = buffer.position() + frameSize;
+		buffer.getInt();
+		int base = buffer.get();
+		int radixPos = buffer.getInt();
+		int len = buffer.getInt();
+		if (base < MIN_BASE || base > MAX_BASE) {
+			throw new IllegalArgumentException(BASE_ERROR + base);
+		}
+		int width = bitsPerDigit(base);
+		if (len < 1 || radixPos < 0 || radixPos > len
+				|| packedSize(len, width) != frameSize - HEADER_SIZE
+						- FIELDS_SIZE) {
+			throw new IllegalArgumentException(LENGTH_ERROR + len);
+		}
+
+		// Unpacking the digits through a bit accumulator
+		int[] digits = new int[len + 1];
+		digits[LEN_POS] = len;
+		int mask = (1 << width) - 1, count = 0;
+		long bits = 0;
+		for (int i = 1; i <= len; i++) {
+			while (count < width) {
+				bits |= (buffer.get() & 0xFFL) << count;
+				count += Byte.SIZE;
+			}
+			digits[i] = (int) (bits & mask);
+			bits >>>= width;
+			count -= width;
+			if (digits[i] >= base) {
+				throw new IllegalArgumentException(DIGIT_ERROR + digits[i]);
+			}
+		}
+
+		buffer.position(end);
+		return new DigitFrame(base, radixPos, digits);
+	}
+
+	/**
+	 * Writes this frame into a buffer, which must have at least
+	 * getFrameSize() bytes remaining.
+	 *
+	 * @param buffer
+	 *            the buffer to write to
+	 */
+	public void write(ByteBuffer buffer) {
+		int len = getLength(), width = bitsPerDigit(getBase());
+		buffer.putInt(getFrameSize() - HEADER_SIZE);
+		buffer.put((byte) getBase());
+		buffer.putInt(getRadixPos());
+		buffer.putInt(len);
+
+		// Packing the digits through a bit accumulator
+		long bits = 0;
+		int count = 0;
+		for (int i = 1; i <= len; i++) {
+			bits |= (long) _digits[i] << count;
+			count += width;
+			while (count >= Byte.SIZE) {
+				buffer.put((byte) bits);
+				bits >>>= Byte.SIZE;
+				count -= Byte.SIZE;
+			}
+		}
+		if (count > 0) {
+			buffer.put((byte) bits);
+		}
+	}
+
+	/* Private Methods */
+
+	/**
+	 * Returns the number of bits needed to hold the largest digit of a base.
+	 */
+	private static int bitsPerDigit(int base) {
+		return Integer.SIZE - Integer.numberOfLeadingZeros(base - 1);
+	}
+
+	private static int packedSize(int len, int width) {
+		return (int) (((long) len * width + Byte.SIZE - 1) / Byte.SIZE);
+	}
+}
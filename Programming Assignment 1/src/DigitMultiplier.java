@@ -0,0 +1,25 @@
+/**
+ * This interface specifies a multiplication engine working on digit arrays.
+ * Numbers are stored one digit per array index, in reverse order, with the
+ * length of the number stored in the first index (the layout used by
+ * SpaceshipMomentum).
+ * 
+ * @author Victor Hazali
+ */
+public interface DigitMultiplier {
+
+	/**
+	 * Multiplies v and m.
+	 * 
+	 * @param v
+	 *            first number to be multiplied
+	 * @param m
+	 *            second number to be multiplied
+	 * @param base
+	 *            radix base of the numbers
+	 * @return an integer array containing the product of v and m, stored in
+	 *         reverse order and having the length stored in the first index.
+	 *         The array may be one of the inputs and must not be modified.
+	 */
+	public int[] multiplyDigits(int[] v, int[] m, int base);
+}
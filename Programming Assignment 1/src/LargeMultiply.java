@@ -11,8 +11,13 @@ import java.util.*;
 class LargeMultiply { // in Mooshak online judge, make sure that Java file name = class name that contains Main method
 
     public static void main(String[] args) {
-		Scanner sc = new Scanner(System.in);
-        PrintWriter pw =  new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out))); // use this (a much faster output routine) instead of Java System.out.println (slow)
+		System.exit(run(System.in, System.out, args));
+    }
+
+	// Same as main on the given streams, returning the exit status instead of exiting, so BatchServer can host it
+    static int run(InputStream input, PrintStream output, String[] args) {
+		Scanner sc = new Scanner(input);
+        PrintWriter pw =  new PrintWriter(new BufferedWriter(new OutputStreamWriter(output))); // use this (a much faster output routine) instead of Java System.out.println (slow)
 
 		int maxDigits =  20000; 
 
@@ -33,7 +38,7 @@ class LargeMultiply { // in Mooshak online judge, make sure that Java file name
 			int fpM = scanArray(M, arrM);
 
 			int[] result = new int[maxDigits*2];
-            int resultLength = multArrays(arrV, arrM, arrV[arrV.length-1], arrM[arrM.length-1], B, result);
+            int resultLength = multArraysDeferred(arrV, arrM, arrV[arrV.length-1], arrM[arrM.length-1], B, result);
 
 			String out = resultToString(result, resultLength, fpV+fpM);
 
@@ -42,21 +47,32 @@ class LargeMultiply { // in Mooshak online judge, make sure that Java file name
         }
         pw.close(); // do not forget to use this
 
+		return 0;
     }
 
-	private static int multArrays(int[] arrV, int[] arrM, int sizeV, int sizeM, int base, int[] result) {
-		int d=0;
-        int i=0;
-        for (d=0; d<sizeM; d++) {
-			int carry = 0;
-			for (i=0; i<sizeV; i++) {
-				result[i+d] += arrV[i] * arrM[d] + carry;
-                carry = result[i+d] / base;
-                result[i+d] %= base;
+	// Long multiplication where column sums are accumulated in long without propagating any carry,
+	// so the inner loop is a plain multiply-add. Each column holds at most min(sizeV,sizeM)
+	// products of at most 35*35, which cannot overflow a long, so carries are normalized once at the end.
+	private static int multArraysDeferred(int[] arrV, int[] arrM, int sizeV, int sizeM, int base, int[] result) {
+		long[] columns = new long[sizeV+sizeM];
+        for (int d=0; d<sizeM; d++) {
+			long digit = arrM[d];
+			if (digit == 0)
+				continue;
+			for (int i=0; i<sizeV; i++) {
+				columns[i+d] += digit * arrV[i];
 			}
-            result[d+i] += carry;
 		}
-        return d+i;
+
+		RadixDivider divider = RadixDivider.forBase(base); // carry without hardware division
+		long carry = 0;
+		for (int k=0; k<sizeV+sizeM; k++) {
+			carry += columns[k];
+			long quotient = divider.quotient(carry);
+			result[k] = (int)(carry - quotient * base);
+			carry = quotient;
+		}
+        return sizeV+sizeM;
 	}
 	
 
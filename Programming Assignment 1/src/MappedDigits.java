@@ -0,0 +1,174 @@
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * This class stores the digits of a number in a memory-mapped file, so that a
+ * number may be larger than the available memory. The file is mapped in
+ * chunks of CHUNK_SIZE bytes and the digits are laid out exactly as in
+ * OffHeapDigits (one byte per digit, least significant first), so all the
+ * operations of OffHeapDigits work on mapped numbers as well. The operating
+ * system pages the digits in and out as they are accessed.
+ *
+ * @author Victor Hazali
+ */
+public class MappedDigits extends OffHeapDigits {
+
+	/** Constant variables **/
+	private static final char	RADIX_PT		= '.';
+	private static final char	NEWLINE			= '\n';
+	private static final char	CARRIAGE_RETURN	= '\r';
+	private static final int	BUFFER_SIZE		= 1 << 16;
+
+	/** Member Variables **/
+	private File				_file;
+	private RandomAccessFile	_raf;
+	private long				_checksum;
+
+	/* Constructor */
+
+	/**
+	 * Maps the given file as a number of the given length. The file is
+	 * created if it does not exist, and grown if it is too short. Existing
+	 * digits in the file are kept.
+	 *
+	 * @param file
+	 *            the file storing the digits
+	 * @param length
+	 *            number of digits
+	 * @throws IOException
+	 *             when the file cannot be opened or mapped
+	 */
+	public MappedDigits(File file, long length) throws IOException {
+		super();
+		_file = file;
+		_raf = new RandomAccessFile(file, "rw");
+		FileChannel channel = _raf.getChannel();
+		for (long from = 0; from < length; from += CHUNK_SIZE) {
+			addChunk(channel.map(FileChannel.MapMode.READ_WRITE, from,
+					CHUNK_SIZE));
+		}
+		setLength(length);
+	}
+
+	/* Accessors and Modifiers */
+
+	public File getFile() {
+		return _file;
+	}
+
+	/**
+	 * Returns the CRC-32 of the digits, as computed by store. This identifies
+	 * the operand when resuming an interrupted multiplication.
+	 */
+	public long getChecksum() {
+		return _checksum;
+	}
+
+	public void setChecksum(long checksum) {
+		_checksum = checksum;
+	}
+
+	/* Public Methods */
+
+	/**
+	 * Reads one line containing a number in base-B form and stores its digits
+	 * in the given file. The line is first written out sequentially and then
+	 * mapped and reversed in place, so memory use does not depend on the
+	 * length of the number.
+	 *
+	 * @param in
+	 *            the reader to read from
+	 * @param file
+	 *            the file to store the digits in
+	 * @return the number read, mapped from the file
+	 * @throws IOException
+	 *             when the reader fails, the input has ended or the file
+	 *             cannot be written
+	 */
+	public static MappedDigits store(Reader in, File file) throws IOException {
+		CRC32 crc = new CRC32();
+		long index = 0, radixIndex = -1;
+		int c = in.read();
+
+		if (c < 0) {
+			throw new IOException("No line found");
+		}
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(file),
+				BUFFER_SIZE);
+		try {
+			while (c >= 0 && c != NEWLINE) {
+				if (c == RADIX_PT) {
+					radixIndex = index;
+				} else if (c != CARRIAGE_RETURN) {
+					int digit = charToInt((char) c);
+					out.write(digit);
+					crc.update(digit);
+					index++;
+				}
+				c = in.read();
+			}
+		} finally {
+			out.close();
+		}
+
+		MappedDigits number = new MappedDigits(file, index);
+		// Digits were stored most significant first
+		number.reverse();
+		if (radixIndex >= 0) {
+			number.setHasRadixPt(true);
+			number.setRadixPos(index - radixIndex);
+		}
+		number.setChecksum(crc.getValue());
+		return number;
+	}
+
+	/**
+	 * Writes all modified digits back to the file.
+	 */
+	public void force() {
+		for (ByteBuffer chunk : getChunks()) {
+			((MappedByteBuffer) chunk).force();
+		}
+	}
+
+	/**
+	 * Writes all modified digits back to the file and unmaps it. The file
+	 * itself is kept.
+	 */
+	@Override
+	public void close() {
+		force();
+		super.close();
+		try {
+			_raf.close();
+		} catch (IOException e) {
+			// Nothing left to release
+		}
+	}
+
+	/* Private Methods */
+
+	/**
+	 * Takes in a character and returns its int value based on radix system.
+	 * i.e. char A will return 10 , B returns 11 etc.
+	 *
+	 * @param c
+	 *            char to convert
+	 * @return Equivalent integer value
+	 */
+	private static int charToInt(char c) {
+		if (c <= '9') {
+			return c - '0';
+		}
+		return c - 'A' + 10;
+	}
+}
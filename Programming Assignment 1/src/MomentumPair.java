@@ -0,0 +1,70 @@
+/**
+ * This class holds one test case of the spaceship momentum problem as it moves
+ * through the stages of SpaceshipMomentum's pipeline: the radix base B, the
+ * velocity V and mass M as read from the input, and the momentum P once it has
+ * been calculated.
+ * 
+ * @author Victor Hazali
+ */
+public class MomentumPair {
+
+	/* Member Variables */
+	private int		_base;
+	private String	_velocity;
+	private String	_mass;
+	private String	_result;
+
+	/* Constructor */
+
+	public MomentumPair(int base, String velocity, String mass) {
+		setBase(base);
+		setVelocity(velocity);
+		setMass(mass);
+		setResult(null);
+	}
+
+	/* Accessors and Modifiers */
+
+	public int getBase() {
+		return _base;
+	}
+
+	public void setBase(int base) {
+		_base = base;
+	}
+
+	public String getVelocity() {
+		return _velocity;
+	}
+
+	public void setVelocity(String velocity) {
+		_velocity = velocity;
+	}
+
+	public String getMass() {
+		return _mass;
+	}
+
+	public void setMass(String mass) {
+		_mass = mass;
+	}
+
+	public String getResult() {
+		return _result;
+	}
+
+	/**
+	 * Sets the momentum of this pair. The velocity and mass are no longer
+	 * needed afterwards and are released.
+	 * 
+	 * @param result
+	 *            the calculated momentum
+	 */
+	public void setResult(String result) {
+		_result = result;
+		if (result != null) {
+			setVelocity(null);
+			setMass(null);
+		}
+	}
+}
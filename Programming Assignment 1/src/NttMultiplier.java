@@ -0,0 +1,435 @@
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class multiplies numbers with a number theoretic transform (NTT), the
+ * discrete Fourier transform modulo the prime MOD = 15 * 2^27 + 1. The digit
+ * sequences are transformed, multiplied pointwise and transformed back, which
+ * gives the column sums of the product exactly as long as none of them reaches
+ * MOD. The carries are then resolved by CarryPropagator.
+ *
+ * Products with larger column sums are convolved twice, modulo MOD and modulo
+ * SECOND_MOD = 7 * 2^26 + 1, and each column sum is reconstructed from its two
+ * residues with the Chinese remainder theorem. Column sums then only have to
+ * stay below MOD * SECOND_MOD, about 2^59, which every product holds that is
+ * short enough for the 2^26 elements of the transforms modulo SECOND_MOD.
+ *
+ * Transforms up to IN_PLACE_LENGTH elements are done in place with radix-4
+ * butterflies (two radix-2 stages fused into one pass). Longer transforms do
+ * not fit into the cache and use the six-step layout instead: the sequence is
+ * viewed as an n1 x n2 matrix that is transposed, transformed row by row,
+ * multiplied by twiddle factors, transposed, transformed row by row and
+ * transposed back, so every row transform works on contiguous memory. The
+ * rows and transposes are split across the fork/join pool.
+ *
+ * Root tables for each transform length are cached between calls, so a batch
+ * of large products only computes them once.
+ *
+ * @author Victor Hazali
+ */
+public class NttMultiplier implements DigitMultiplier {
+
+	/** Constant variables **/
+	// Index in int array storing length of number
+	private static final int								LEN_POS				= 0;
+	// The prime 15 * 2^27 + 1 and a primitive root modulo it
+	public static final long								MOD					= 2013265921L;
+	private static final long								ROOT				= 31;
+	private static final int								MAX_LOG				= 27;
+	// The prime 7 * 2^26 + 1 and a primitive root modulo it, for the second
+	// convolution of products whose column sums reach MOD
+	private static final long								SECOND_MOD			= 469762049L;
+	private static final long								SECOND_ROOT			= 3;
+	private static final int								SECOND_MAX_LOG		= 26;
+	// MOD^-1 modulo SECOND_MOD, for the Chinese remainder theorem
+	private static final long								MOD_INVERSE			= power(MOD,
+																						SECOND_MOD - 2, SECOND_MOD);
+	// Longest transform done in place, longer ones use the six-step layout
+	private static final int								IN_PLACE_LENGTH		= 1 << 16;
+	// Elements of work below which a pass is not split any further
+	private static final int								LEAF_WORK			= 1 << 14;
+	private static final int								TRANSPOSE			= 0;
+	private static final int								ROWS				= 1;
+	private static final int								POINTWISE			= 2;
+
+	/** Member Variables **/
+	// Powers of the root of unity of each length, by length and direction
+	private static final ConcurrentHashMap<Long, int[]>	ROOT_TABLES			= new ConcurrentHashMap<Long, int[]>();
+	// Twiddle steps of the six-step layout, by length and direction
+	private static final ConcurrentHashMap<Long, int[]>	TWIDDLE_TABLES		= new ConcurrentHashMap<Long, int[]>();
+
+	/* Public Methods */
+
+	/**
+	 * Checks whether the column sums of a product fit below MOD, or below
+	 * MOD * SECOND_MOD with two convolutions, and the transform is not too
+	 * long.
+	 *
+	 * @param vLen
+	 *            number of digits of the first operand
+	 * @param mLen
+	 *            number of digits of the second operand
+	 * @param base
+	 *            radix base of the numbers
+	 * @return true if the product can be computed by this class
+	 */
+	public static boolean supports(int vLen, int mLen, int base) {
+		return supports(vLen, mLen, base - 1, base - 1)
+				|| supportsTwoPrimes(vLen, mLen, base - 1);
+	}
+
+	/**
+	 * Checks whether the convolution of two sequences with elements in
+	 * [0, aMax] and [0, bMax] stays below MOD and the transform is not too
+	 * long.
+	 * 
+	 * @param aLen
+	 *            number of elements of the first sequence
+	 * @param bLen
+	 *            number of elements of the second sequence
+	 * @param aMax
+	 *            largest element of the first sequence
+	 * @param bMax
+	 *            largest element of the second sequence
+	 * @return true if the convolution can be computed exactly by convolve
+	 */
+	public static boolean supports(int aLen, int bLen, long aMax, long bMax) {
+		// Checking the product first, so the column bound cannot overflow
+		long product = aMax * bMax;
+		return product < MOD && product * Math.min(aLen, bLen) < MOD
+				&& (long) aLen + bLen <= 1 << MAX_LOG;
+	}
+
+	/**
+	 * Multiplies v and m with the transform. The product must be supported.
+	 */
+	@Override
+	public int[] multiplyDigits(int[] v, int[] m, int base) {
+		int maxLen = v[LEN_POS] + m[LEN_POS];
+		int[] sums = convolve(v, 1, v[LEN_POS], m, 1, m[LEN_POS], MOD);
+
+		long[] columns = new long[maxLen + 1];
+		if (supports(v[LEN_POS], m[LEN_POS], base - 1, base - 1)) {
+			for (int i = 0; i < maxLen; i++) {
+				columns[i + 1] = sums[i];
+			}
+		} else {
+			int[] seconds = convolve(v, 1, v[LEN_POS], m, 1, m[LEN_POS],
+					SECOND_MOD);
+			// x = r1 + MOD * ((r2 - r1) / MOD mod SECOND_MOD)
+			for (int i = 0; i < maxLen; i++) {
+				long difference = seconds[i] - sums[i] % SECOND_MOD;
+				if (difference < 0) {
+					difference += SECOND_MOD;
+				}
+				columns[i + 1] = sums[i] + MOD
+						* (difference * MOD_INVERSE % SECOND_MOD);
+			}
+		}
+		int[] result = new int[maxLen + 1];
+		CarryPropagator.normalize(columns, result, 1, maxLen + 1, base);
+
+		// Length includes the last digit only if there was a final carry
+		if (result[maxLen] != 0) {
+			result[LEN_POS] = maxLen;
+		} else {
+			result[LEN_POS] = maxLen - 1;
+		}
+		return result;
+	}
+
+	/**
+	 * Computes the linear convolution of two sequences modulo MOD, without
+	 * resolving any carries. Element k of the result is the sum of a[i] * b[j]
+	 * over all i + j = k, reduced modulo MOD.
+	 * 
+	 * @param a
+	 *            array holding the first sequence, all elements in [0, MOD)
+	 * @param aFrom
+	 *            index of the first element of the first sequence
+	 * @param aLen
+	 *            number of elements of the first sequence
+	 * @param b
+	 *            array holding the second sequence, all elements in [0, MOD)
+	 * @param bFrom
+	 *            index of the first element of the second sequence
+	 * @param bLen
+	 *            number of elements of the second sequence
+	 * @return an array whose first aLen + bLen - 1 elements hold the
+	 *         convolution. It may be longer, the remaining elements being zero
+	 */
+	public static int[] convolve(int[] a, int aFrom, int aLen, int[] b,
+			int bFrom, int bLen) {
+		return convolve(a, aFrom, aLen, b, bFrom, bLen, MOD);
+	}
+
+	/* Private Methods */
+
+	/**
+	 * Checks whether the column sums of a product of numbers with digits in
+	 * [0, digitMax] fit below MOD * SECOND_MOD and the transform is not too
+	 * long for SECOND_MOD.
+	 */
+	private static boolean supportsTwoPrimes(int vLen, int mLen, long digitMax) {
+		return digitMax * digitMax * Math.min(vLen, mLen) < MOD
+				* SECOND_MOD && (long) vLen + mLen <= 1 << SECOND_MAX_LOG;
+	}
+
+	/**
+	 * Computes the linear convolution of two sequences modulo mod, which is
+	 * MOD or SECOND_MOD.
+	 */
+	private static int[] convolve(int[] a, int aFrom, int aLen, int[] b,
+			int bFrom, int bLen, long mod) {
+		int n = Integer.highestOneBit(aLen + bLen);
+		if (n < aLen + bLen) {
+			n <<= 1;
+		}
+
+		int[] x = new int[n], y = new int[n];
+		System.arraycopy(a, aFrom, x, 0, aLen);
+		System.arraycopy(b, bFrom, y, 0, bLen);
+		x = transform(x, false, mod);
+		y = transform(y, false, mod);
+		run(new Pass(POINTWISE, x, y, 1, n, null, null, 0, n, mod));
+		x = transform(x, true, mod);
+
+		// Scaling by 1/n, which the inverse transform leaves out
+		long nInverse = power(n, mod - 2, mod);
+		for (int i = 0; i < n; i++) {
+			x[i] = (int) (x[i] * nInverse % mod);
+		}
+		return x;
+	}
+
+	/**
+	 * Transforms a sequence whose length is a power of two. The inverse
+	 * transform is not scaled by 1/n.
+	 *
+	 * @return the array holding the transform, which may not be a
+	 */
+	private static int[] transform(int[] a, boolean inverse, long mod) {
+		int n = a.length;
+		if (n <= IN_PLACE_LENGTH) {
+			butterflies(a, 0, n, roots(n, inverse, mod), mod);
+			return a;
+		}
+
+		// Six steps on a viewed as n1 rows of n2 elements
+		int n1 = 1 << (Integer.numberOfTrailingZeros(n) / 2), n2 = n / n1;
+		int[] t = new int[n];
+		run(new Pass(TRANSPOSE, a, t, n1, n2, null, null, 0, n1, mod));
+		run(new Pass(ROWS, t, null, n2, n1, roots(n1, inverse, mod),
+				twiddles(n, n2, inverse, mod), 0, n2, mod));
+		run(new Pass(TRANSPOSE, t, a, n2, n1, null, null, 0, n2, mod));
+		run(new Pass(ROWS, a, null, n1, n2, roots(n2, inverse, mod), null, 0,
+				n1, mod));
+		run(new Pass(TRANSPOSE, a, t, n1, n2, null, null, 0, n1, mod));
+		return t;
+	}
+
+	/**
+	 * Transforms len elements of a starting at offset in place, with radix-4
+	 * butterflies and a final radix-2 stage if the number of stages is odd.
+	 *
+	 * @param roots
+	 *            the first len / 2 powers of a len-th root of unity
+	 */
+	private static void butterflies(int[] a, int offset, int len,
+			int[] roots, long mod) {
+		// Bit reversal permutation
+		for (int i = 1, j = 0; i < len; i++) {
+			int bit = len >> 1;
+			for (; (j & bit) != 0; bit >>= 1) {
+				j ^= bit;
+			}
+			j ^= bit;
+			if (i < j) {
+				int temp = a[offset + i];
+				a[offset + i] = a[offset + j];
+				a[offset + j] = temp;
+			}
+		}
+
+		int h = 1;
+		while (4 * h <= len) {
+			// Stages of half sizes h and 2h in one pass
+			int step1 = len / (2 * h), step2 = len / (4 * h);
+			for (int i = offset; i < offset + len; i += 4 * h) {
+				for (int j = 0; j < h; j++) {
+					long w1 = roots[j * step1];
+					long w2 = roots[j * step2];
+					long w3 = roots[(j + h) * step2];
+					long a0 = a[i + j], a1 = a[i + j + h] * w1 % mod;
+					long a2 = a[i + j + 2 * h], a3 = a[i + j + 3 * h] * w1 % mod;
+					long b0 = add(a0, a1, mod), b1 = sub(a0, a1, mod);
+					long b2 = add(a2, a3, mod) * w2 % mod;
+					long b3 = sub(a2, a3, mod) * w3 % mod;
+					a[i + j] = (int) add(b0, b2, mod);
+					a[i + j + 2 * h] = (int) sub(b0, b2, mod);
+					a[i + j + h] = (int) add(b1, b3, mod);
+					a[i + j + 3 * h] = (int) sub(b1, b3, mod);
+				}
+			}
+			h *= 4;
+		}
+		if (h < len) {
+			for (int j = 0; j < h; j++) {
+				long u = a[offset + j], w = a[offset + j + h] * (long) roots[j]
+						% mod;
+				a[offset + j] = (int) add(u, w, mod);
+				a[offset + j + h] = (int) sub(u, w, mod);
+			}
+		}
+	}
+
+	/**
+	 * Returns the first len / 2 powers of a primitive len-th root of unity, or
+	 * of its inverse, computing them on first use.
+	 */
+	private static int[] roots(int len, boolean inverse, long mod) {
+		Long key = mod << MAX_LOG + 2 | (long) len << 1 | (inverse ? 1 : 0);
+		int[] table = ROOT_TABLES.get(key);
+		if (table == null) {
+			table = powers(root(len, inverse, mod), Math.max(1, len / 2), mod);
+			ROOT_TABLES.putIfAbsent(key, table);
+		}
+		return table;
+	}
+
+	/**
+	 * Returns the twiddle steps of the six-step layout for length n: the
+	 * first rows powers of a primitive n-th root of unity, or of its inverse.
+	 */
+	private static int[] twiddles(int n, int rows, boolean inverse, long mod) {
+		Long key = mod << MAX_LOG + 2 | (long) n << 1 | (inverse ? 1 : 0);
+		int[] table = TWIDDLE_TABLES.get(key);
+		if (table == null) {
+			table = powers(root(n, inverse, mod), rows, mod);
+			TWIDDLE_TABLES.putIfAbsent(key, table);
+		}
+		return table;
+	}
+
+	private static long root(int len, boolean inverse, long mod) {
+		long root = power(mod == MOD ? ROOT : SECOND_ROOT, (mod - 1) / len,
+				mod);
+		return inverse ? power(root, mod - 2, mod) : root;
+	}
+
+	private static int[] powers(long x, int count, long mod) {
+		int[] table = new int[count];
+		long value = 1;
+		for (int i = 0; i < count; i++) {
+			table[i] = (int) value;
+			value = value * x % mod;
+		}
+		return table;
+	}
+
+	private static long power(long x, long e, long mod) {
+		long result = 1;
+		x %= mod;
+		while (e > 0) {
+			if ((e & 1) != 0) {
+				result = result * x % mod;
+			}
+			x = x * x % mod;
+			e >>= 1;
+		}
+		return result;
+	}
+
+	private static long add(long x, long y, long mod) {
+		long sum = x + y;
+		return sum >= mod ? sum - mod : sum;
+	}
+
+	private static long sub(long x, long y, long mod) {
+		long difference = x - y;
+		return difference < 0 ? difference + mod : difference;
+	}
+
+	private static void run(Pass pass) {
+		CarryPropagator.getPool().invoke(pass);
+	}
+
+	/**
+	 * One pass over the rows of a matrix stored row by row: transposing it,
+	 * transforming (and optionally twiddling) each row, or multiplying it
+	 * pointwise by another one. The rows are split into halves until the work
+	 * left is below LEAF_WORK.
+	 */
+	private static class Pass extends RecursiveAction {
+
+		private static final long	serialVersionUID	= 1L;
+
+		private int					_kind;
+		private int[]				_source;
+		private int[]				_target;
+		private int					_rows;
+		private int					_columns;
+		private int[]				_roots;
+		private int[]				_twiddles;
+		private int					_low;
+		private int					_high;
+		private long				_mod;
+
+		public Pass(int kind, int[] source, int[] target, int rows,
+				int columns, int[] roots, int[] twiddles, int low, int high,
+				long mod) {
+			_kind = kind;
+			_source = source;
+			_target = target;
+			_rows = rows;
+			_columns = columns;
+			_roots = roots;
+			_twiddles = twiddles;
+			_low = low;
+			_high = high;
+			_mod = mod;
+		}
+
+		@Override
+		protected void compute() {
+			int width = _kind == POINTWISE ? 1 : _columns;
+			if (_high - _low <= 1 || (long) (_high - _low) * width <= LEAF_WORK) {
+				runRows();
+				return;
+			}
+			int mid = (_low + _high) >>> 1;
+			invokeAll(new Pass(_kind, _source, _target, _rows, _columns,
+					_roots, _twiddles, _low, mid, _mod), new Pass(_kind,
+					_source, _target, _rows, _columns, _roots, _twiddles, mid,
+					_high, _mod));
+		}
+
+		private void runRows() {
+			if (_kind == POINTWISE) {
+				for (int i = _low; i < _high; i++) {
+					_source[i] = (int) ((long) _source[i] * _target[i] % _mod);
+				}
+			} else if (_kind == TRANSPOSE) {
+				// Column by column, so the writes stay within a few lines
+				for (int c = 0; c < _columns; c++) {
+					for (int r = _low; r < _high; r++) {
+						_target[c * _rows + r] = _source[r * _columns + c];
+					}
+				}
+			} else {
+				for (int r = _low; r < _high; r++) {
+					int offset = r * _columns;
+					butterflies(_source, offset, _columns, _roots, _mod);
+					if (_twiddles != null) {
+						long step = _twiddles[r], w = 1;
+						for (int c = 0; c < _columns; c++) {
+							_source[offset + c] = (int) (_source[offset + c]
+									* w % _mod);
+							w = w * step % _mod;
+						}
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,467 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class stores the digits of a number outside of the Java heap. Digits are
+ * kept one per byte (B is at most 36) in direct buffers of CHUNK_SIZE bytes
+ * each, and are addressed with long indices, so a number is not limited to
+ * 2^31 digits and does not put a huge array on the heap.
+ *
+ * Digits are stored in reverse order: index 0 holds the least significant
+ * digit. The radix point is not stored; instead the number of digits after
+ * the radix point is kept alongside the digits.
+ *
+ * Products are computed block by block: blocks of BLOCK_DIGITS digits are
+ * copied onto the heap, multiplied with a DigitMultiplier and added back into
+ * the off-heap result with carry propagation.
+ *
+ * @author Victor Hazali
+ */
+public class OffHeapDigits implements Closeable {
+
+	/** Constant variables **/
+	// Index in int array storing length of number
+	private static final int	LEN_POS			= 0;
+	protected static final int	CHUNK_BITS		= 20;
+	protected static final int	CHUNK_SIZE		= 1 << CHUNK_BITS;
+	private static final int	CHUNK_MASK		= CHUNK_SIZE - 1;
+	// Number of digits multiplied on the heap at a time
+	private static final int	BLOCK_DIGITS	= 1 << 14;
+	private static final char	RADIX_PT		= '.';
+	private static final char	NEWLINE			= '\n';
+	private static final char	CARRIAGE_RETURN	= '\r';
+
+	/** Member Variables **/
+	private List<ByteBuffer>	_chunks;
+	private long				_length;
+	private boolean				_hasRadixPt;
+	private long				_radixPos;
+
+	/* Constructors */
+
+	public OffHeapDigits() {
+		_chunks = new ArrayList<ByteBuffer>();
+		setLength(0);
+		setHasRadixPt(false);
+		setRadixPos(0);
+	}
+
+	/**
+	 * Creates a number of the given length with all digits set to 0.
+	 *
+	 * @param length
+	 *            number of digits
+	 */
+	public OffHeapDigits(long length) {
+		this();
+		ensureCapacity(length);
+		setLength(length);
+	}
+
+	/* Accessors and Modifiers */
+
+	public long getLength() {
+		return _length;
+	}
+
+	public void setLength(long length) {
+		_length = length;
+	}
+
+	public boolean hasRadixPt() {
+		return _hasRadixPt;
+	}
+
+	public void setHasRadixPt(boolean hasRadixPt) {
+		_hasRadixPt = hasRadixPt;
+	}
+
+	public long getRadixPos() {
+		return _radixPos;
+	}
+
+	public void setRadixPos(long radixPos) {
+		_radixPos = radixPos;
+	}
+
+	protected List<ByteBuffer> getChunks() {
+		return _chunks;
+	}
+
+	protected void addChunk(ByteBuffer chunk) {
+		_chunks.add(chunk);
+	}
+
+	/**
+	 * Returns the digit at the given index, or 0 if the index is beyond the
+	 * length of the number.
+	 *
+	 * @param index
+	 *            index of the digit, 0 being the least significant
+	 * @return the digit at index
+	 */
+	public int getDigit(long index) {
+		if (index >= _length) {
+			return 0;
+		}
+		return _chunks.get((int) (index >>> CHUNK_BITS)).get(
+				(int) (index & CHUNK_MASK));
+	}
+
+	/**
+	 * Sets the digit at the given index. The index must be within the capacity
+	 * of the number.
+	 *
+	 * @param index
+	 *            index of the digit, 0 being the least significant
+	 * @param digit
+	 *            the digit to store
+	 */
+	public void setDigit(long index, int digit) {
+		_chunks.get((int) (index >>> CHUNK_BITS)).put(
+				(int) (index & CHUNK_MASK), (byte) digit);
+	}
+
+	/* Public Methods */
+
+	/**
+	 * Reads one line containing a number in base-B form. The digits are read
+	 * one character at a time, so the line is never held as a String.
+	 *
+	 * @param in
+	 *            the reader to read from
+	 * @return the number read
+	 * @throws IOException
+	 *             when the reader fails or the input has ended
+	 */
+	public static OffHeapDigits read(Reader in) throws IOException {
+		OffHeapDigits number = new OffHeapDigits();
+		long index = 0, radixIndex = -1;
+		int c = in.read();
+
+		if (c < 0) {
+			throw new IOException("No line found");
+		}
+		while (c >= 0 && c != NEWLINE) {
+			if (c == RADIX_PT) {
+				radixIndex = index;
+			} else if (c != CARRIAGE_RETURN) {
+				number.ensureCapacity(index + 1);
+				number.setDigit(index, charToInt((char) c));
+				index++;
+			}
+			c = in.read();
+		}
+		number.setLength(index);
+
+		// Digits were stored most significant first
+		number.reverse();
+		if (radixIndex >= 0) {
+			number.setHasRadixPt(true);
+			number.setRadixPos(index - radixIndex);
+		}
+		return number;
+	}
+
+	/**
+	 * Checks whether the number is a single digit without a radix point.
+	 *
+	 * @param digit
+	 *            the digit to compare against
+	 * @return true if the number consists of exactly the given digit
+	 */
+	public boolean isDigit(int digit) {
+		return getLength() == 1 && !hasRadixPt() && getDigit(0) == digit;
+	}
+
+	/**
+	 * Adds two numbers.
+	 *
+	 * @param first
+	 *            first number to be added
+	 * @param second
+	 *            second number to be added
+	 * @param base
+	 *            radix base of the numbers
+	 * @return the sum of first and second, stored off the heap
+	 */
+	public static OffHeapDigits add(OffHeapDigits first, OffHeapDigits second,
+			int base) {
+		OffHeapDigits result = new OffHeapDigits(Math.max(first.getLength(),
+				second.getLength()) + 1);
+		RadixDivider divider = RadixDivider.forBase(base);
+		int carry = 0, sum = 0;
+
+		for (long index = 0; index < result.getLength(); index++) {
+			sum = first.getDigit(index) + second.getDigit(index) + carry;
+			carry = divider.quotient(sum);
+			result.setDigit(index, sum - carry * base);
+		}
+		result.trim();
+		return result;
+	}
+
+	/**
+	 * Multiplies two numbers block by block. Each pair of blocks is multiplied
+	 * on the heap by the engine and added into the off-heap result at its
+	 * offset. The radix point of the result is the sum of both radix points.
+	 *
+	 * @param v
+	 *            first number to be multiplied
+	 * @param m
+	 *            second number to be multiplied
+	 * @param base
+	 *            radix base of the numbers
+	 * @param engine
+	 *            multiplication engine used for the blocks
+	 * @return the product of v and m, stored off the heap
+	 */
+	public static OffHeapDigits multiply(OffHeapDigits v, OffHeapDigits m,
+			int base, DigitMultiplier engine) {
+		OffHeapDigits result = new OffHeapDigits(v.getLength() + m.getLength());
+		RadixDivider divider = RadixDivider.forBase(base);
+
+		for (long vFrom = 0; vFrom < v.getLength(); vFrom += BLOCK_DIGITS) {
+			int[] vBlock = v.toBlock(vFrom, BLOCK_DIGITS);
+			if (isZero(vBlock)) {
+				continue;
+			}
+			for (long mFrom = 0; mFrom < m.getLength(); mFrom += BLOCK_DIGITS) {
+				int[] mBlock = m.toBlock(mFrom, BLOCK_DIGITS);
+				if (isZero(mBlock)) {
+					continue;
+				}
+				result.addBlock(engine.multiplyDigits(vBlock, mBlock, base),
+						vFrom + mFrom, divider);
+			}
+		}
+
+		// Length includes the last digit only if there was a final carry
+		if (result.getLength() > 1
+				&& result.getDigit(result.getLength() - 1) == 0) {
+			result.setLength(result.getLength() - 1);
+		}
+		result.setHasRadixPt(v.hasRadixPt() || m.hasRadixPt());
+		result.setRadixPos(v.getRadixPos() + m.getRadixPos());
+		return result;
+	}
+
+	/**
+	 * Copies digits [from, from+size) onto the heap, in the layout used by
+	 * SpaceshipMomentum. Leading zeroes of the block are not counted in its
+	 * length.
+	 *
+	 * @param from
+	 *            index of the first digit to copy
+	 * @param size
+	 *            maximum number of digits to copy
+	 * @return the block, stored in reverse order with its length in the first
+	 *         index
+	 */
+	public int[] toBlock(long from, int size) {
+		int len = (int) Math.min(size, getLength() - from);
+		int[] block = new int[len + 1];
+		for (int i = 1; i <= len; i++) {
+			block[i] = getDigit(from + i - 1);
+		}
+		while (len > 1 && block[len] == 0) {
+			len--;
+		}
+		block[LEN_POS] = len;
+		return block;
+	}
+
+	/**
+	 * Adds a block into this number, starting at the given digit index, and
+	 * propagates the carry as far as needed.
+	 *
+	 * @param block
+	 *            the block to add, in the layout used by SpaceshipMomentum
+	 * @param offset
+	 *            index of the digit that the first digit of the block adds to
+	 * @param divider
+	 *            divider for the radix base of the numbers
+	 */
+	public void addBlock(int[] block, long offset, RadixDivider divider) {
+		int base = divider.getBase();
+		int carry = 0, sum = 0;
+		long index = offset;
+
+		for (int i = 1; i <= block[LEN_POS]; i++, index++) {
+			sum = getDigit(index) + block[i] + carry;
+			carry = divider.quotient(sum);
+			setDigit(index, sum - carry * base);
+		}
+		while (carry != 0) {
+			sum = getDigit(index) + carry;
+			carry = divider.quotient(sum);
+			setDigit(index, sum - carry * base);
+			index++;
+		}
+	}
+
+	/**
+	 * Writes the number out most significant digit first, formatted the same
+	 * way as SpaceshipMomentum.arrayToString formats a product: the radix
+	 * point is placed in front of the digit at index radixPos-1, trailing
+	 * zeroes of the fraction and unnecessary leading zeroes are removed.
+	 *
+	 * @param out
+	 *            the writer to write to
+	 * @throws IOException
+	 *             when the writer fails
+	 */
+	public void write(Writer out) throws IOException {
+		long radixPos = hasRadixPt() ? getRadixPos() : 0;
+
+		// Lowest index to be written, after removing trailing zeroes
+		long lowest = 0;
+		boolean writeRadixPt = radixPos >= 1 && radixPos <= getLength();
+		if (hasRadixPt()) {
+			while (lowest < getLength() && getDigit(lowest) == 0
+					&& lowest + 1 != radixPos) {
+				lowest++;
+			}
+			if (lowest + 1 == radixPos) {
+				// Radix point with nothing after it is meaningless
+				writeRadixPt = false;
+			}
+		}
+
+		char pending = 0;
+		boolean leading = true;
+		for (long index = getLength() - 1; index >= lowest; index--) {
+			pending = writeLeading(out, pending, leading,
+					intToChar(getDigit(index)));
+			leading = leading && pending != 0;
+			if (writeRadixPt && index + 1 == radixPos) {
+				pending = writeLeading(out, pending, leading, RADIX_PT);
+				leading = leading && pending != 0;
+			}
+		}
+		if (leading && pending != 0 && pending != '0') {
+			out.write(pending);
+		}
+	}
+
+	/**
+	 * Writes the number out exactly as it was read.
+	 *
+	 * @param out
+	 *            the writer to write to
+	 * @throws IOException
+	 *             when the writer fails
+	 */
+	public void echo(Writer out) throws IOException {
+		for (long index = getLength() - 1; index >= 0; index--) {
+			out.write(intToChar(getDigit(index)));
+			if (hasRadixPt() && index == getRadixPos() && index != 0) {
+				out.write(RADIX_PT);
+			}
+		}
+	}
+
+	/**
+	 * Releases the off-heap memory of this number. The buffers are no longer
+	 * referenced afterwards and the number must not be used any more.
+	 */
+	@Override
+	public void close() {
+		_chunks.clear();
+		setLength(0);
+	}
+
+	/* Private Methods */
+
+	/**
+	 * Makes sure digits [0, capacity) can be stored.
+	 */
+	private void ensureCapacity(long capacity) {
+		while ((long) _chunks.size() * CHUNK_SIZE < capacity) {
+			_chunks.add(ByteBuffer.allocateDirect(CHUNK_SIZE));
+		}
+	}
+
+	/**
+	 * Reverses the order of the digits in place.
+	 */
+	protected void reverse() {
+		for (long low = 0, high = getLength() - 1; low < high; low++, high--) {
+			int temp = getDigit(low);
+			setDigit(low, getDigit(high));
+			setDigit(high, temp);
+		}
+	}
+
+	/**
+	 * Removes leading zeroes, keeping at least one digit.
+	 */
+	private void trim() {
+		while (getLength() > 1 && getDigit(getLength() - 1) == 0) {
+			setLength(getLength() - 1);
+		}
+	}
+
+	/**
+	 * Handles one character of write while leading zeroes are being removed.
+	 * A '0' is only dropped if the character after it is not the radix point,
+	 * so one character is held back until the next one is known.
+	 *
+	 * @return the character now held back, or 0 once leading zeroes are done
+	 */
+	private static char writeLeading(Writer out, char pending,
+			boolean leading, char c) throws IOException {
+		if (!leading) {
+			out.write(c);
+			return 0;
+		}
+		if (pending == 0 || (pending == '0' && c != RADIX_PT)) {
+			return c;
+		}
+		out.write(pending);
+		out.write(c);
+		return 0;
+	}
+
+	/**
+	 * Checks whether a block is zero.
+	 */
+	private static boolean isZero(int[] block) {
+		return block[LEN_POS] <= 1 && (block[LEN_POS] == 0 || block[1] == 0);
+	}
+
+	/**
+	 * Takes in a character and returns its int value based on radix system.
+	 * i.e. char A will return 10 , B returns 11 etc.
+	 *
+	 * @param c
+	 *            char to convert
+	 * @return Equivalent integer value
+	 */
+	private static int charToInt(char c) {
+		if (c <= '9') {
+			return c - '0';
+		}
+		return c - 'A' + 10;
+	}
+
+	/**
+	 * Takes in a digit and converts it into a character based on radix system.
+	 * i.e. int 10 will return char A, 11 returns B etc.
+	 *
+	 * @param digit
+	 *            int to convert
+	 * @return Equivalent char value
+	 */
+	private static char intToChar(int digit) {
+		if (digit <= 9) {
+			return (char) (digit + '0');
+		}
+		return (char) (digit - 10 + 'A');
+	}
+}
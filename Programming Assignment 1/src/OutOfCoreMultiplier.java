@@ -0,0 +1,254 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * This class multiplies numbers stored in memory-mapped files, for operands
+ * whose digits do not fit into memory. Both operands are split into blocks of
+ * BLOCK_DIGITS digits, and the product is produced one output block at a time:
+ * output block k is the sum of all block products v(i) * m(j) with i + j = k,
+ * plus whatever overflowed from block k-1. Each block product is computed on
+ * the heap by a DigitMultiplier.
+ *
+ * Output blocks are computed in bands of BAND_BLOCKS consecutive blocks. For
+ * each band the blocks of v are read once, in order, and the blocks of m the
+ * band needs slide through a cache of BAND_BLOCKS blocks, so each block of m
+ * is read about once per band as well. With a and b operand blocks this reads
+ * about (a + b + BAND_BLOCKS) * (a + b) / BAND_BLOCKS blocks in total, instead
+ * of the 2 * a * b blocks of reading both operands for every block product.
+ *
+ * Every output block is written to disk exactly once, in order, and the only
+ * state carried from one band to the next is a window of BAND_BLOCKS + 1
+ * blocks. After every band the result file is flushed and the window is saved
+ * to a checkpoint file, so a job that is killed resumes from the last
+ * checkpoint instead of starting over.
+ *
+ * @author Victor Hazali
+ */
+public class OutOfCoreMultiplier {
+
+	/** Constant variables **/
+	// Index in int array storing length of number
+	private static final int		LEN_POS				= 0;
+	// Number of digits in a block
+	private static final int		BLOCK_DIGITS		= 1 << 16;
+	// Extra digits in the window to hold the overflow of summed products
+	private static final int		WINDOW_SLACK		= 64;
+	// Number of output blocks computed per band, and between two checkpoints
+	private static final int		BAND_BLOCKS			= 32;
+	private static final int		CHECKPOINT_VERSION	= 2;
+	private static final String		PRODUCT_SUFFIX		= ".p";
+	private static final String		CHECKPOINT_SUFFIX	= ".ckpt";
+	private static final String		TEMP_SUFFIX			= ".tmp";
+
+	/** Member Variables **/
+	private DigitMultiplier			_engine;
+	private File					_directory;
+
+	/* Constructor */
+
+	/**
+	 * Creates a multiplier keeping its files in the given directory.
+	 *
+	 * @param engine
+	 *            multiplication engine used for the block products
+	 * @param directory
+	 *            directory for the product and checkpoint files
+	 */
+	public OutOfCoreMultiplier(DigitMultiplier engine, File directory) {
+		_engine = engine;
+		_directory = directory;
+	}
+
+	/* Public Methods */
+
+	/**
+	 * Multiplies v and m into the file name.p in the working directory. If a
+	 * checkpoint name.ckpt for the same operands exists, the multiplication
+	 * resumes from it.
+	 *
+	 * @param v
+	 *            first number to be multiplied
+	 * @param m
+	 *            second number to be multiplied
+	 * @param base
+	 *            radix base of the numbers
+	 * @param name
+	 *            name of the job, used to name its files
+	 * @return the product of v and m, mapped from name.p
+	 * @throws IOException
+	 *             when a file cannot be read or written
+	 */
+	public MappedDigits multiply(MappedDigits v, MappedDigits m, int base,
+			String name) throws IOException {
+		long vBlocks = blockCount(v.getLength());
+		long mBlocks = blockCount(m.getLength());
+		long outBlocks = vBlocks + mBlocks;
+		RadixDivider divider = RadixDivider.forBase(base);
+
+		File checkpoint = new File(_directory, name + CHECKPOINT_SUFFIX);
+		MappedDigits result = new MappedDigits(new File(_directory, name
+				+ PRODUCT_SUFFIX), v.getLength() + m.getLength());
+		int[] window = new int[(BAND_BLOCKS + 1) * BLOCK_DIGITS + WINDOW_SLACK];
+		long block = readCheckpoint(checkpoint, v, m, base, window);
+		int[][] mCache = new int[BAND_BLOCKS][];
+		long[] mCached = new long[BAND_BLOCKS];
+		Arrays.fill(mCached, -1);
+
+		for (; block < outBlocks; block += BAND_BLOCKS) {
+			long end = Math.min(block + BAND_BLOCKS, outBlocks);
+			long first = Math.max(0, block - mBlocks + 1);
+			long last = Math.min(end - 1, vBlocks - 1);
+			for (long i = first; i <= last; i++) {
+				int[] vBlock = v.toBlock(i * BLOCK_DIGITS, BLOCK_DIGITS);
+				long jLast = Math.min(end - 1 - i, mBlocks - 1);
+				for (long j = Math.max(0, block - i); j <= jLast; j++) {
+					// Block j replaces block j + BAND_BLOCKS, no longer needed
+					int slot = (int) (j % BAND_BLOCKS);
+					if (mCached[slot] != j) {
+						mCache[slot] = m.toBlock(j * BLOCK_DIGITS, BLOCK_DIGITS);
+						mCached[slot] = j;
+					}
+					addToWindow(window, (int) (i + j - block) * BLOCK_DIGITS,
+							_engine.multiplyDigits(vBlock, mCache[slot], base),
+							divider);
+				}
+			}
+
+			// The lowest blocks of the window up to the end of the band are
+			// now final
+			long offset = block * BLOCK_DIGITS;
+			int count = (int) Math.min((end - block) * BLOCK_DIGITS,
+					result.getLength() - offset);
+			for (int i = 0; i < count; i++) {
+				result.setDigit(offset + i, window[i]);
+			}
+			int shift = (int) (end - block) * BLOCK_DIGITS;
+			System.arraycopy(window, shift, window, 0, window.length - shift);
+			Arrays.fill(window, window.length - shift, window.length, 0);
+
+			result.force();
+			writeCheckpoint(checkpoint, v, m, base, end, window);
+		}
+
+		// Length includes the last digit only if there was a final carry
+		if (result.getLength() > 1
+				&& result.getDigit(result.getLength() - 1) == 0) {
+			result.setLength(result.getLength() - 1);
+		}
+		result.setHasRadixPt(v.hasRadixPt() || m.hasRadixPt());
+		result.setRadixPos(v.getRadixPos() + m.getRadixPos());
+		return result;
+	}
+
+	/**
+	 * Deletes the product and checkpoint files of a job once they are no
+	 * longer needed.
+	 *
+	 * @param name
+	 *            name of the job
+	 */
+	public void discard(String name) {
+		new File(_directory, name + PRODUCT_SUFFIX).delete();
+		new File(_directory, name + CHECKPOINT_SUFFIX).delete();
+	}
+
+	/* Private Methods */
+
+	private static long blockCount(long digits) {
+		return (digits + BLOCK_DIGITS - 1) / BLOCK_DIGITS;
+	}
+
+	/**
+	 * Adds a block product into the window, starting at the given digit.
+	 */
+	private static void addToWindow(int[] window, int offset, int[] product,
+			RadixDivider divider) {
+		int base = divider.getBase();
+		int carry = 0, sum = 0, index = offset;
+
+		for (int i = 1; i <= product[LEN_POS]; i++, index++) {
+			sum = window[index] + product[i] + carry;
+			carry = divider.quotient(sum);
+			window[index] = sum - carry * base;
+		}
+		while (carry != 0) {
+			sum = window[index] + carry;
+			carry = divider.quotient(sum);
+			window[index] = sum - carry * base;
+			index++;
+		}
+	}
+
+	/**
+	 * Reads the checkpoint of a job into the window, if there is one for the
+	 * same operands.
+	 *
+	 * @return the first output block that still has to be computed, 0 if
+	 *         there is no usable checkpoint
+	 */
+	private static long readCheckpoint(File checkpoint, MappedDigits v,
+			MappedDigits m, int base, int[] window) throws IOException {
+		if (!checkpoint.exists()) {
+			return 0;
+		}
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(checkpoint)));
+		try {
+			if (in.readInt() != CHECKPOINT_VERSION || in.readInt() != base
+					|| in.readLong() != v.getLength()
+					|| in.readLong() != v.getChecksum()
+					|| in.readLong() != m.getLength()
+					|| in.readLong() != m.getChecksum()
+					|| in.readInt() != window.length) {
+				return 0;
+			}
+			long block = in.readLong();
+			for (int i = 0; i < window.length; i++) {
+				window[i] = in.readByte();
+			}
+			return block;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Saves the progress of a job. The checkpoint is written to a temporary
+	 * file first and then moved over the previous one, so a job killed while
+	 * writing still finds the previous checkpoint intact.
+	 */
+	private static void writeCheckpoint(File checkpoint, MappedDigits v,
+			MappedDigits m, int base, long block, int[] window)
+			throws IOException {
+		File temp = new File(checkpoint.getPath() + TEMP_SUFFIX);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(temp)));
+		try {
+			out.writeInt(CHECKPOINT_VERSION);
+			out.writeInt(base);
+			out.writeLong(v.getLength());
+			out.writeLong(v.getChecksum());
+			out.writeLong(m.getLength());
+			out.writeLong(m.getChecksum());
+			out.writeInt(window.length);
+			out.writeLong(block);
+			for (int i = 0; i < window.length; i++) {
+				out.writeByte(window[i]);
+			}
+		} finally {
+			out.close();
+		}
+		Files.move(temp.toPath(), checkpoint.toPath(),
+				StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+}
@@ -1,7 +1,9 @@
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.List;
@@ -29,6 +31,12 @@ import java.util.Scanner;
  *             numbers in the specified base B (i.e. for a base 2, there will
  *             only be 0 and 1)
  * 
+ * @options --budget=MS: each pair is allowed MS milliseconds. Pairs that
+ *          are estimated to take too long are rejected with an empty output
+ *          line before any work starts, and the estimated and actual time of
+ *          each pair is reported on the standard error stream. See
+ *          BudgetScheduler.
+ * 
  * @constraints V and M are of at least 1 and at most 5005 digits. T is at least
  *              1 and at most 20. Total length of all numbers in all T pairs is
  *              less than 10010 digits. Memory: 256M. Running time: 1s per T
@@ -52,6 +60,14 @@ public class PA1ABC {
 	/** Constant variables **/
 	private static final boolean		DEBUG_MODE		= true;
 	private static final InputStream	INPUT_STREAM	= System.in;
+	private static final OutputStream	OUTPUT_STREAM	= System.out;
+	// Command line option to set the time allowed per pair, in milliseconds
+	private static final String			BUDGET_OPTION	= "--budget=";
+	private static final long			NANOS_PER_MILLI	= 1000000L;
+	// Cost model of multiply: rate * |V| * |M| nanoseconds
+	private static final String			LONG_NAME		= "long";
+	private static final double			LONG_EXPONENT	= 2.0;
+	private static final double			LONG_RATE		= 12.0;
 
 	/** Output Strings **/
 	private static final String			INPUT_ERROR		= "Failed to read input"
@@ -60,13 +76,27 @@ public class PA1ABC {
 																+ "\n";
 
 	/** Member Variables **/
-	private static boolean				initialised		= false;
+	private boolean						initialised		= false;
 	private PrintWriter					_pw;
 	private int							_pairs;
 	private List<Integer>				_bases;
 	private List<String>				_velocities;
 	private List<String>				_masses;
 	private List<String>				_results;
+	private BudgetScheduler				_scheduler;
+	private InputStream					_input;
+	private OutputStream				_output;
+
+	/** Constructor **/
+
+	public PA1ABC() {
+		this(INPUT_STREAM, OUTPUT_STREAM);
+	}
+
+	public PA1ABC(InputStream input, OutputStream output) {
+		_input = input;
+		_output = output;
+	}
 
 	/** Accessors and Modifiers **/
 
@@ -142,10 +172,27 @@ public class PA1ABC {
 		getResults().add(result);
 	}
 
+	public boolean isBudgeted() {
+		return _scheduler != null;
+	}
+
+	/**
+	 * Sets the time allowed for each pair, which enables the budget scheduler.
+	 * 
+	 * @param budget
+	 *            running time allowed per pair, in milliseconds
+	 */
+	public void setBudget(long budget) {
+		_scheduler = new BudgetScheduler(budget * NANOS_PER_MILLI);
+	}
+
 	/**
 	 * Runs the program to calculate the spaceship's momentum based on inputs.
+	 * 
+	 * @return the exit status: 0 on success, 1 if the input cannot be read
+	 *         and 2 if it does not match the T value stated
 	 */
-	public void run() {
+	public int run() {
 		initialise();
 		try {
 			readInput();
@@ -157,14 +204,15 @@ public class PA1ABC {
 				showToUser(INPUT_ERROR);
 				e.printStackTrace();
 			}
-			System.exit(1);
+			return 1;
 		} catch (IllegalArgumentException e) {
 			if (DEBUG_MODE) {
 				e.printStackTrace();
 			}
 			showToUser(T_MISMATCH);
-			System.exit(2);
+			return 2;
 		}
+		return 0;
 	}
 
 	/**
@@ -174,7 +222,7 @@ public class PA1ABC {
 	public void initialise() {
 		if (!initialised) {
 			_pw = new PrintWriter(new BufferedWriter(new OutputStreamWriter(
-					System.out)));
+					_output)));
 			setPairs(0);
 			setBases(new ArrayList<Integer>());
 			setVelocities(new ArrayList<String>());
@@ -193,7 +241,7 @@ public class PA1ABC {
 	 *             when the number of input does not match the T value stated
 	 */
 	private void readInput() throws IOException, IllegalArgumentException {
-		Scanner sc = new Scanner(INPUT_STREAM);
+		Scanner sc = new Scanner(_input);
 		setPairs(Integer.parseInt(sc.nextLine()));
 		for (int i = 0; i < _pairs; i++) {
 			if (!sc.hasNext()) {
@@ -212,11 +260,45 @@ public class PA1ABC {
 	 * Evaluate each input set to calculate the spaceship's momentum
 	 */
 	private void evaluateInputs() {
+		if (isBudgeted()) {
+			budgetedInputs();
+			return;
+		}
 		for (int i = 0; i < getPairs(); i++) {
 			addResult(calculateMomentum(getBase(i), getVelocity(i), getMass(i)));
 		}
 	}
 
+	/**
+	 * Evaluates the input sets within the time allowed for each pair. Every
+	 * pair is admitted or rejected before any work starts, and the pairs are
+	 * then evaluated in input order, each being admitted again with the
+	 * corrected estimates just before it starts. Rejected pairs get an empty
+	 * result.
+	 */
+	private void budgetedInputs() {
+		int engine = _scheduler.addEngine(LONG_NAME, LONG_EXPONENT, LONG_RATE);
+		int[] vLens = new int[getPairs()], mLens = new int[getPairs()];
+		for (int i = 0; i < getPairs(); i++) {
+			vLens[i] = getVelocity(i).length();
+			mLens[i] = getMass(i).length();
+		}
+		_scheduler.plan(vLens, mLens, engine);
+
+		for (int i = 0; i < getPairs(); i++) {
+			long start = System.nanoTime();
+			int admitted = _scheduler.readmit(i, vLens[i], mLens[i], engine);
+			if (admitted == BudgetScheduler.REJECTED) {
+				addResult("");
+			} else {
+				addResult(calculateMomentum(getBase(i), getVelocity(i),
+						getMass(i)));
+			}
+			_scheduler.record(i, System.nanoTime() - start);
+		}
+		_scheduler.report(System.err);
+	}
+
 	/**
 	 * Calculation of each result based on each set of radix base B, velocity V,
 	 * and relativistic mass M.
@@ -292,6 +374,8 @@ public class PA1ABC {
 
 		// variables to perform the multiplication
 		int carry = 0, vInt = 0, mInt = 0, product = 0;
+		// divides by base with a precomputed reciprocal
+		RadixDivider divider = RadixDivider.forBase(base);
 
 		// indices for radix point
 		int mRadixPos = 0, vRadixPos = 0;
@@ -327,8 +411,8 @@ public class PA1ABC {
 
 				// Checking if there's carry
 				if (product >= base) {
-					carry = product / base;
-					product = product % base;
+					carry = divider.quotient(product);
+					product = product - carry * base;
 				}
 
 				// Storing into result array
@@ -477,9 +561,31 @@ public class PA1ABC {
 		return (char) (digit - 10 + 'A');
 	}
 
+	/**
+	 * Runs the program on the given streams instead of the standard ones,
+	 * returning its exit status rather than exiting, as BatchServer needs.
+	 * 
+	 * @param input
+	 *            stream to read the pairs from
+	 * @param output
+	 *            stream to write the momentums to
+	 * @param args
+	 *            command line options
+	 * @return the exit status of the program
+	 */
+	public static int run(InputStream input, PrintStream output, String[] args) {
+		PA1ABC momentumCalc = new PA1ABC(input, output);
+		for (String arg : args) {
+			if (arg.startsWith(BUDGET_OPTION)) {
+				momentumCalc.setBudget(Long.parseLong(arg
+						.substring(BUDGET_OPTION.length())));
+			}
+		}
+		return momentumCalc.run();
+	}
+
 	public static void main(String[] args) {
-		PA1ABC momentumCalc = new PA1ABC();
-		momentumCalc.run();
+		System.exit(run(System.in, System.out, args));
 	}
 
 }
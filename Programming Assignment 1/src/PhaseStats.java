@@ -0,0 +1,248 @@
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * This class records where the time of each pair of SpaceshipMomentum goes.
+ * Every pair gets one record, tagged with its radix base, operand lengths and
+ * the algorithm chosen for it, holding the time spent in each phase:
+ *
+ * <pre>
+ * parse     turning the operands into digit arrays
+ * multiply  multiplying the digits, without the recombination below
+ * recombine resolving the carries of the column sums of Karatsuba
+ * format    turning the product back into the output form
+ * </pre>
+ *
+ * and the bytes allocated by the thread while the pair was evaluated, where
+ * the JVM can count them. The records are grouped by algorithm, radix base and
+ * total number of digits, in buckets between powers of two, and the report
+ * gives percentiles of each phase within each bucket.
+ *
+ * A record is kept for each thread, so pairs can be evaluated concurrently.
+ * The caller only pays for the timing while statistics are being recorded.
+ *
+ * @author Victor Hazali
+ */
+public class PhaseStats {
+
+	/** Constant variables **/
+	public static final int			PARSE				= 0;
+	public static final int			MULTIPLY			= 1;
+	public static final int			RECOMBINE			= 2;
+	public static final int			FORMAT				= 3;
+	private static final String[]	PHASE_NAMES			= { "parse",
+			"multiply", "recombine", "format"			};
+	private static final String		ALLOCATED_NAME		= "allocated";
+	private static final String		UNKNOWN_NAME		= "unknown";
+	private static final int[]		PERCENTILES			= { 50, 90, 99 };
+	private static final double		NANOS_PER_MILLI		= 1000000.0;
+	private static final double		BYTES_PER_KILOBYTE	= 1024.0;
+	private static final String		REPORT_HEADER		= "algorithm\tbase\tdigits\tpairs\tphase\tp50\tp90\tp99\tmax (ms, KB for allocated)";
+	private static final String		KEY_FORMAT			= "%s %02d %02d";
+	private static final String		BUCKET_FORMAT		= "%s\t%d\t%d-%d\t%d\t%s";
+	private static final String		VALUE_FORMAT		= "\t%.3f";
+
+	/** Member Variables **/
+	private ThreadLocal<Record>		_current;
+	private List<Record>			_records;
+	// Counts the bytes allocated by each thread, null if unsupported
+	private com.sun.management.ThreadMXBean	_threads;
+
+	/* Constructor */
+
+	public PhaseStats() {
+		_current = new ThreadLocal<Record>();
+		_records = new ArrayList<Record>();
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean
+				&& ((com.sun.management.ThreadMXBean) threads)
+						.isThreadAllocatedMemorySupported()) {
+			_threads = (com.sun.management.ThreadMXBean) threads;
+			_threads.setThreadAllocatedMemoryEnabled(true);
+		}
+	}
+
+	/* Public Methods */
+
+	/**
+	 * Starts the record of a pair on the current thread.
+	 *
+	 * @param base
+	 *            radix base of the pair
+	 * @param vLen
+	 *            length of the velocity
+	 * @param mLen
+	 *            length of the mass
+	 */
+	public void begin(int base, int vLen, int mLen) {
+		Record record = new Record(base, vLen, mLen);
+		record._allocated = -allocatedBytes();
+		record._lap = System.nanoTime();
+		_current.set(record);
+	}
+
+	/**
+	 * Tags the record of the current thread with the algorithm chosen for
+	 * its pair.
+	 *
+	 * @param algorithm
+	 *            name of the algorithm
+	 */
+	public void setAlgorithm(String algorithm) {
+		Record record = _current.get();
+		if (record != null) {
+			record._algorithm = algorithm;
+		}
+	}
+
+	/**
+	 * Adds the time since the record of the current thread was started, or
+	 * since its last lap, to a phase.
+	 *
+	 * @param phase
+	 *            PARSE, MULTIPLY or FORMAT
+	 */
+	public void lap(int phase) {
+		Record record = _current.get();
+		if (record != null) {
+			long now = System.nanoTime();
+			record._nanos[phase] += now - record._lap;
+			record._lap = now;
+		}
+	}
+
+	/**
+	 * Adds time spent in a phase to the record of the current thread. Time
+	 * spent outside of a record, such as products computed for another class,
+	 * is ignored.
+	 *
+	 * @param phase
+	 *            RECOMBINE, or another phase timed by the caller
+	 * @param nanos
+	 *            time spent, in nanoseconds
+	 */
+	public void add(int phase, long nanos) {
+		Record record = _current.get();
+		if (record != null) {
+			record._nanos[phase] += nanos;
+		}
+	}
+
+	/**
+	 * Ends the record of the current thread and keeps it for the report.
+	 */
+	public void end() {
+		Record record = _current.get();
+		_current.remove();
+		record._allocated += allocatedBytes();
+		// Recombination is timed inside the multiplication
+		record._nanos[MULTIPLY] = Math.max(0, record._nanos[MULTIPLY]
+				- record._nanos[RECOMBINE]);
+		synchronized (this) {
+			_records.add(record);
+		}
+	}
+
+	/**
+	 * Writes the percentiles of each phase for each bucket of pairs.
+	 *
+	 * @param out
+	 *            the stream to write the report to
+	 */
+	public synchronized void report(PrintStream out) {
+		// Keys sort by algorithm, then base, then size
+		Map<String, List<Record>> buckets = new TreeMap<String, List<Record>>();
+		for (Record record : _records) {
+			String key = String.format(KEY_FORMAT, record._algorithm,
+					record._base, bucket(record));
+			if (!buckets.containsKey(key)) {
+				buckets.put(key, new ArrayList<Record>());
+			}
+			buckets.get(key).add(record);
+		}
+
+		int rows = _threads == null ? PHASE_NAMES.length
+				: PHASE_NAMES.length + 1;
+		out.println(REPORT_HEADER);
+		for (List<Record> records : buckets.values()) {
+			Record first = records.get(0);
+			int low = 1 << (bucket(first) - 1), high = (1 << bucket(first)) - 1;
+			for (int row = 0; row < rows; row++) {
+				boolean allocated = row == PHASE_NAMES.length;
+				long[] values = new long[records.size()];
+				for (int i = 0; i < values.length; i++) {
+					values[i] = allocated ? records.get(i)._allocated : records
+							.get(i)._nanos[row];
+				}
+				Arrays.sort(values);
+				double unit = allocated ? BYTES_PER_KILOBYTE : NANOS_PER_MILLI;
+
+				out.print(String.format(BUCKET_FORMAT, first._algorithm,
+						first._base, low, high, records.size(),
+						allocated ? ALLOCATED_NAME : PHASE_NAMES[row]));
+				for (int percentile : PERCENTILES) {
+					out.print(String.format(VALUE_FORMAT,
+							percentile(values, percentile) / unit));
+				}
+				out.println(String.format(VALUE_FORMAT, values[values.length - 1]
+						/ unit));
+			}
+		}
+	}
+
+	/* Private Methods */
+
+	/**
+	 * Returns the bucket of a pair: the number of bits of its total length,
+	 * so bucket b holds the pairs of 2^(b-1) to 2^b - 1 digits.
+	 */
+	private static int bucket(Record record) {
+		return Integer.SIZE
+				- Integer.numberOfLeadingZeros(Math.max(1, record._vLen
+						+ record._mLen));
+	}
+
+	/**
+	 * Returns a percentile of sorted values, by the nearest rank.
+	 */
+	private static long percentile(long[] sorted, int percentile) {
+		int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+		return sorted[Math.max(0, rank - 1)];
+	}
+
+	private long allocatedBytes() {
+		if (_threads == null) {
+			return 0;
+		}
+		return _threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * The record of one pair.
+	 */
+	private static class Record {
+
+		private int		_base;
+		private int		_vLen;
+		private int		_mLen;
+		private String	_algorithm;
+		private long[]	_nanos;
+		private long	_allocated;
+		// Time the current phase started
+		private long	_lap;
+
+		public Record(int base, int vLen, int mLen) {
+			_base = base;
+			_vLen = vLen;
+			_mLen = mLen;
+			_algorithm = UNKNOWN_NAME;
+			_nanos = new long[PHASE_NAMES.length];
+		}
+	}
+}
@@ -0,0 +1,131 @@
+import java.math.BigInteger;
+import java.util.Random;
+
+/**
+ * This class probabilistically verifies the product of two numbers without
+ * performing a second multiplication. Each number is reduced modulo several
+ * random 61-bit primes in one linear pass (Horner's rule in base B), and the
+ * product is accepted if V * M = P holds for every prime.
+ *
+ * A wrong product passes the check for a random prime only if the prime
+ * divides the difference between the expected and actual values, so a faulty
+ * engine is caught with overwhelming probability in O(n) time.
+ *
+ * Numbers use the same layout as SpaceshipMomentum: one digit per array index,
+ * stored in reverse order, with the length of the number stored in the first
+ * index.
+ *
+ * @author Victor Hazali
+ */
+public class ProductVerifier {
+
+	/** Constant variables **/
+	// Index in int array storing length of number
+	private static final int	LEN_POS		= 0;
+	private static final int	PRIME_BITS	= 61;
+
+	/** Member Variables **/
+	private long[]				_primes;
+
+	/* Constructor */
+
+	/**
+	 * Creates a verifier checking against the given number of random primes.
+	 *
+	 * @param primeCount
+	 *            number of primes to check against
+	 * @param random
+	 *            source of randomness used to pick the primes
+	 */
+	public ProductVerifier(int primeCount, Random random) {
+		_primes = new long[primeCount];
+		for (int i = 0; i < primeCount; i++) {
+			_primes[i] = BigInteger.probablePrime(PRIME_BITS, random)
+					.longValue();
+		}
+	}
+
+	/* Accessors and Modifiers */
+
+	public long[] getPrimes() {
+		return _primes;
+	}
+
+	/* Public Methods */
+
+	/**
+	 * Checks whether product is the product of v and m.
+	 *
+	 * @param v
+	 *            first number that was multiplied
+	 * @param m
+	 *            second number that was multiplied
+	 * @param product
+	 *            product to be checked
+	 * @param base
+	 *            radix base of the numbers
+	 * @return false if product is definitely wrong, true if it is correct with
+	 *         high probability
+	 */
+	public boolean check(int[] v, int[] m, int[] product, int base) {
+		for (long p : _primes) {
+			long expected = mulMod(residue(v, base, p), residue(m, base, p), p);
+			if (expected != residue(product, base, p)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Reduces a number modulo p with Horner's rule, starting from the most
+	 * significant digit.
+	 *
+	 * @param number
+	 *            the number to reduce
+	 * @param base
+	 *            radix base of the number
+	 * @param p
+	 *            the modulus, less than 2^61
+	 * @return number mod p
+	 */
+	public static long residue(int[] number, int base, long p) {
+		long result = 0;
+		for (int i = number[LEN_POS]; i >= 1; i--) {
+			result = mulMod(result, base, p) + number[i];
+			if (result >= p) {
+				result -= p;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Multiplies a and b modulo p by double-and-add, which never overflows
+	 * since all intermediate values stay below 2p < 2^62.
+	 *
+	 * @param a
+	 *            first factor, less than p
+	 * @param b
+	 *            second factor, non-negative
+	 * @param p
+	 *            the modulus, less than 2^61
+	 * @return a * b mod p
+	 */
+	public static long mulMod(long a, long b, long p) {
+		long result = 0;
+		for (int bit = 63 - Long.numberOfLeadingZeros(b); bit >= 0; bit--) {
+			result += result;
+			if (result >= p) {
+				result -= p;
+			}
+			if (((b >>> bit) & 1) != 0) {
+				result += a;
+				if (result >= p) {
+					result -= p;
+				}
+			}
+		}
+		return result;
+	}
+}
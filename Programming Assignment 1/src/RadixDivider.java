@@ -0,0 +1,140 @@
+/**
+ * This class divides by a fixed radix base without using a hardware division.
+ * Following Granlund and Montgomery, the division x / B is replaced by a
+ * multiplication with a precomputed reciprocal followed by a shift:
+ *
+ * <pre>
+ * x / B = (x * ceil(2^SHIFT / B)) >> SHIFT,  for 0 <= x < MAX_DIVIDEND
+ * </pre>
+ *
+ * The rounding error of the reciprocal is less than B / 2^SHIFT, which can
+ * only change the quotient once x reaches 2^SHIFT / B. MAX_DIVIDEND is chosen
+ * well below that, and such that the product fits into a long.
+ *
+ * Long dividends, such as the running carry over deferred column sums, are
+ * divided the same way while the product still fits into a long, which holds
+ * below base * 2^22. Larger ones are divided 16 bits at a time from the top,
+ * each step dividing a remainder and the next 16 bits, which stays below
+ * MAX_DIVIDEND.
+ *
+ * Dividers for every base in [2,36] are created once and shared, so the
+ * multiplication loops only pay for a multiply and a shift per carry.
+ *
+ * @author Victor Hazali
+ */
+public final class RadixDivider {
+
+	/** Constant variables **/
+	private static final int			SHIFT			= 40;
+	// Exclusive upper bound of dividends that are divided exactly
+	public static final int				MAX_DIVIDEND	= 1 << 23;
+	public static final int				MIN_BASE		= 2;
+	public static final int				MAX_BASE		= 36;
+	// Bits of a long dividend divided in one step, and the shifts to them
+	private static final int			PART_BITS		= 16;
+	private static final int			PART_MASK		= (1 << PART_BITS) - 1;
+	private static final int			TOP_PART		= Long.SIZE - PART_BITS;
+	private static final int			LONG_SHIFT		= 22;
+
+	private static final RadixDivider[]	DIVIDERS		= new RadixDivider[MAX_BASE + 1];
+
+	static {
+		for (int base = MIN_BASE; base <= MAX_BASE; base++) {
+			DIVIDERS[base] = new RadixDivider(base);
+		}
+	}
+
+	/** Member Variables **/
+	private final int					_base;
+	private final long					_reciprocal;
+	// Exclusive upper bound of long dividends divided in a single step
+	private final long					_longLimit;
+
+	/* Constructor */
+
+	private RadixDivider(int base) {
+		_base = base;
+		_reciprocal = ((1L << SHIFT) + base - 1) / base;
+		_longLimit = (long) base << LONG_SHIFT;
+	}
+
+	/* Accessors */
+
+	public int getBase() {
+		return _base;
+	}
+
+	/* Public Methods */
+
+	/**
+	 * Returns the shared divider for the given radix base.
+	 *
+	 * @param base
+	 *            radix base, in the range [2,36]
+	 * @return the divider for base
+	 * @throws IllegalArgumentException
+	 *             when base is out of range
+	 */
+	public static RadixDivider forBase(int base) {
+		if (base < MIN_BASE || base > MAX_BASE) {
+			throw new IllegalArgumentException("Unsupported radix base " + base);
+		}
+		return DIVIDERS[base];
+	}
+
+	/**
+	 * Divides x by the radix base.
+	 *
+	 * @param x
+	 *            the dividend, in the range [0,MAX_DIVIDEND)
+	 * @return x / base
+	 */
+	public int quotient(int x) {
+		return (int) ((x * _reciprocal) >>> SHIFT);
+	}
+
+	/**
+	 * Takes x modulo the radix base.
+	 *
+	 * @param x
+	 *            the dividend, in the range [0,MAX_DIVIDEND)
+	 * @return x % base
+	 */
+	public int remainder(int x) {
+		return x - quotient(x) * _base;
+	}
+
+	/**
+	 * Divides a long by the radix base.
+	 *
+	 * @param x
+	 *            the dividend, which must not be negative
+	 * @return x / base
+	 */
+	public long quotient(long x) {
+		if (x < _longLimit) {
+			return (x * _reciprocal) >>> SHIFT;
+		}
+		long quotient = 0;
+		int remainder = 0;
+		for (int shift = TOP_PART; shift >= 0; shift -= PART_BITS) {
+			int part = remainder << PART_BITS
+					| (int) (x >>> shift) & PART_MASK;
+			int digit = quotient(part);
+			remainder = part - digit * _base;
+			quotient = quotient << PART_BITS | digit;
+		}
+		return quotient;
+	}
+
+	/**
+	 * Takes a long modulo the radix base.
+	 *
+	 * @param x
+	 *            the dividend, which must not be negative
+	 * @return x % base
+	 */
+	public int remainder(long x) {
+		return (int) (x - quotient(x) * _base);
+	}
+}
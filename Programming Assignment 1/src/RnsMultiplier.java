@@ -0,0 +1,351 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class multiplies numbers in a residue number system. The digits are
+ * grouped into limbs of as many digits as fit below 2^29, and the limb
+ * sequences are convolved modulo a few primes between 2^29 and 2^30, just
+ * enough of them for their product to exceed every column sum of the limb
+ * convolution. Three primes cover operands of up to 2^28 limbs. The
+ * convolutions for the different primes are independent of each other and run
+ * in parallel on the fork/join pool, each with Convolver.
+ *
+ * Each column sum is then reconstructed from its residues with the Chinese
+ * remainder theorem in mixed radix form (Garner's algorithm):
+ *
+ * <pre>
+ * column = a0 + a1 * p0 + a2 * p0 * p1 + ... + a(k-1) * p0 * ... * p(k-2)
+ * </pre>
+ *
+ * which is evaluated into a few limbs and added into the product at the
+ * position of the column, so the reconstruction is linear in the length of the
+ * product. A final pass resolves the carries between the limbs.
+ *
+ * The arithmetic of the reconstruction is done in Montgomery form with
+ * R = 2^32, so reductions take two multiplications and a shift instead of a
+ * division.
+ *
+ * @author Victor Hazali
+ */
+public class RnsMultiplier implements DigitMultiplier {
+
+	/** Constant variables **/
+	// Index in int array storing length of number
+	private static final int	LEN_POS		= 0;
+	// All primes and limbs are below 2^PRIME_BITS, all limbs below 2^LIMB_BITS
+	private static final int	PRIME_BITS	= 30;
+	private static final int	LIMB_BITS	= 29;
+	// Montgomery radix R = 2^R_BITS
+	private static final int	R_BITS		= 32;
+	private static final long	R_MASK		= (1L << R_BITS) - 1;
+	// Miller-Rabin witnesses that are exact for numbers below 3 * 10^9
+	private static final long[]	WITNESSES	= { 2, 3, 5, 7 };
+
+	/** Member Variables **/
+	// Primes found so far, with -p^-1 mod R and R^2 mod p for each of them
+	private static volatile long[]	primes		= new long[0];
+	private static volatile long[]	negInverses	= new long[0];
+	private static volatile long[]	rSquares	= new long[0];
+
+	/* Public Methods */
+
+	/**
+	 * Multiplies v and m through the residues of their limb convolution.
+	 */
+	@Override
+	public int[] multiplyDigits(int[] v, int[] m, int base) {
+		int maxLen = v[LEN_POS] + m[LEN_POS];
+		int limbDigits = limbDigits(base);
+		long limbBase = power(base, limbDigits);
+		final int[] vLimbs = toLimbs(v, base, limbDigits);
+		final int[] mLimbs = toLimbs(m, base, limbDigits);
+
+		// Product of the primes must exceed the largest column sum
+		double columnBits = 2 * LIMB_BITS + Math.log(Math.min(vLimbs.length,
+				mLimbs.length)) / Math.log(2);
+		int count = (int) Math.ceil((columnBits + 1) / (PRIME_BITS - 1));
+		ensurePrimes(count);
+		long[] p = primes, n = negInverses, r2 = rSquares;
+
+		// Convolving the limbs modulo each prime in parallel
+		final int[][] residues = new int[count][];
+		final List<RecursiveAction> tasks = new ArrayList<RecursiveAction>();
+		for (int i = 0; i < count; i++) {
+			final int prime = i, modulus = (int) p[i];
+			tasks.add(new RecursiveAction() {
+				private static final long	serialVersionUID	= 1L;
+
+				@Override
+				protected void compute() {
+					residues[prime] = Convolver.convolve(vLimbs, mLimbs,
+							modulus);
+				}
+			});
+		}
+		CarryPropagator.getPool().invoke(new RecursiveAction() {
+			private static final long	serialVersionUID	= 1L;
+
+			@Override
+			protected void compute() {
+				ForkJoinTask.invokeAll(tasks);
+			}
+		});
+
+		// Reconstructing each column and adding it in at its position
+		long[][] prefixes = new long[count][];
+		long[] inverses = new long[count];
+		garnerConstants(count, p, n, r2, prefixes, inverses);
+		long[] sums = new long[vLimbs.length + mLimbs.length + count];
+		long[] columnResidues = new long[count], mixed = new long[count];
+		long[] columnLimbs = new long[count + 1];
+		for (int column = 0; column < residues[0].length; column++) {
+			for (int i = 0; i < count; i++) {
+				columnResidues[i] = residues[i][column];
+			}
+			garner(columnResidues, count, p, n, prefixes, inverses, mixed);
+			int len = fromMixedRadix(mixed, count, p, limbBase, columnLimbs);
+			for (int limb = 0; limb < len; limb++) {
+				sums[column + limb] += columnLimbs[limb];
+			}
+		}
+
+		// Resolving the carries and splitting the limbs into digits
+		RadixDivider divider = RadixDivider.forBase(base);
+		int[] result = new int[maxLen + 1];
+		long carry = 0;
+		for (int limb = 0, index = 1; index <= maxLen; limb++) {
+			long value = sums[limb] + carry;
+			carry = value / limbBase;
+			value -= carry * limbBase;
+			for (int d = 0; d < limbDigits && index <= maxLen; d++, index++) {
+				long quotient = divider.quotient(value);
+				result[index] = (int) (value - quotient * base);
+				value = quotient;
+			}
+		}
+
+		// Length includes the last digit only if there was a final carry
+		if (result[maxLen] != 0) {
+			result[LEN_POS] = maxLen;
+		} else {
+			result[LEN_POS] = maxLen - 1;
+		}
+		return result;
+	}
+
+	/* Private Methods */
+
+	/**
+	 * Montgomery reduction: returns t / R mod p for 0 <= t < p * R.
+	 */
+	private static long redc(long t, long p, long negInverse) {
+		long q = ((t & R_MASK) * negInverse) & R_MASK;
+		long r = (t + q * p) >>> R_BITS;
+		return r >= p ? r - p : r;
+	}
+
+	/**
+	 * Computes the constants Garner's algorithm needs for the first count
+	 * primes, in Montgomery form: prefixes[i][j] = p0 * ... * p(j-1) mod p(i)
+	 * for j < i, and inverses[i] = (p0 * ... * p(i-1))^-1 mod p(i).
+	 */
+	private static void garnerConstants(int count, long[] p, long[] n,
+			long[] r2, long[][] prefixes, long[] inverses) {
+		for (int i = 0; i < count; i++) {
+			prefixes[i] = new long[i];
+			// Running product p0 * ... * p(j-1) in Montgomery form
+			long product = redc(r2[i], p[i], n[i]);
+			for (int j = 0; j < i; j++) {
+				prefixes[i][j] = product;
+				product = redc(product
+						* redc(p[j] * r2[i], p[i], n[i]), p[i], n[i]);
+			}
+			// Inverse by Fermat's little theorem
+			inverses[i] = power(product, p[i] - 2, p[i], n[i], r2[i]);
+		}
+	}
+
+	/**
+	 * Converts the residues of a number into its mixed radix digits a(i),
+	 * each below p(i).
+	 */
+	private static void garner(long[] residues, int count, long[] p,
+			long[] n, long[][] prefixes, long[] inverses, long[] mixed) {
+		for (int i = 0; i < count; i++) {
+			// Sum of a(j) * p0 * ... * p(j-1) for j < i, modulo p(i)
+			long sum = 0;
+			for (int j = 0; j < i; j++) {
+				sum += redc(prefixes[i][j] * mixed[j], p[i], n[i]);
+				if (sum >= p[i]) {
+					sum -= p[i];
+				}
+			}
+
+			long difference = residues[i] - sum;
+			if (difference < 0) {
+				difference += p[i];
+			}
+			mixed[i] = redc(difference * inverses[i], p[i], n[i]);
+		}
+	}
+
+	/**
+	 * Evaluates the mixed radix form of a number into limbs, by Horner's rule
+	 * from a(count-1) down.
+	 *
+	 * @return the number of limbs used
+	 */
+	private static int fromMixedRadix(long[] mixed, int count, long[] p,
+			long limbBase, long[] limbs) {
+		int len = 0;
+
+		for (int j = count - 1; j >= 0; j--) {
+			long carry = mixed[j];
+			for (int limb = 0; limb < len; limb++) {
+				long value = limbs[limb] * p[j] + carry;
+				carry = value / limbBase;
+				limbs[limb] = value - carry * limbBase;
+			}
+			while (carry != 0) {
+				long quotient = carry / limbBase;
+				limbs[len] = carry - quotient * limbBase;
+				carry = quotient;
+				len++;
+			}
+		}
+		return len;
+	}
+
+	/**
+	 * Returns x^e in Montgomery form, for x in Montgomery form.
+	 */
+	private static long power(long x, long e, long p, long negInverse,
+			long rSquare) {
+		long result = redc(rSquare, p, negInverse);
+		while (e > 0) {
+			if ((e & 1) != 0) {
+				result = redc(result * x, p, negInverse);
+			}
+			x = redc(x * x, p, negInverse);
+			e >>= 1;
+		}
+		return result;
+	}
+
+	private static long power(long base, int e) {
+		long result = 1;
+		for (int i = 0; i < e; i++) {
+			result *= base;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the number of digits in the given base that fit into a limb.
+	 */
+	private static int limbDigits(int base) {
+		int digits = 0;
+		long value = base;
+		while (value < 1L << LIMB_BITS) {
+			value *= base;
+			digits++;
+		}
+		return digits;
+	}
+
+	/**
+	 * Groups the digits of a number into limbs, least significant first.
+	 */
+	private static int[] toLimbs(int[] number, int base, int limbDigits) {
+		int len = number[LEN_POS];
+		int[] limbs = new int[(len + limbDigits - 1) / limbDigits];
+		for (int limb = 0; limb < limbs.length; limb++) {
+			int value = 0;
+			int top = Math.min((limb + 1) * limbDigits, len);
+			for (int index = top; index > limb * limbDigits; index--) {
+				value = value * base + number[index];
+			}
+			limbs[limb] = value;
+		}
+		return limbs;
+	}
+
+	/**
+	 * Makes sure at least count primes are known, finding more below
+	 * 2^PRIME_BITS as needed.
+	 */
+	private static synchronized void ensurePrimes(int count) {
+		if (primes.length >= count) {
+			return;
+		}
+		long[] found = new long[Math.max(count, 2 * primes.length)];
+		long[] inverses = new long[found.length];
+		long[] squares = new long[found.length];
+		System.arraycopy(primes, 0, found, 0, primes.length);
+		System.arraycopy(negInverses, 0, inverses, 0, primes.length);
+		System.arraycopy(rSquares, 0, squares, 0, primes.length);
+
+		long candidate = primes.length == 0 ? (1L << PRIME_BITS) - 1
+				: primes[primes.length - 1] - 2;
+		for (int i = primes.length; i < found.length; candidate -= 2) {
+			if (isPrime(candidate)) {
+				found[i] = candidate;
+				// Newton's iteration doubles the correct low bits of p^-1
+				long inverse = candidate;
+				for (int step = 0; step < 5; step++) {
+					inverse = inverse * (2 - candidate * inverse) & R_MASK;
+				}
+				inverses[i] = -inverse & R_MASK;
+				long r = (1L << R_BITS) % candidate;
+				squares[i] = r * r % candidate;
+				i++;
+			}
+		}
+
+		negInverses = inverses;
+		rSquares = squares;
+		primes = found;
+	}
+
+	/**
+	 * Deterministic Miller-Rabin test for odd numbers below 2^PRIME_BITS.
+	 */
+	private static boolean isPrime(long n) {
+		long d = n - 1;
+		int s = 0;
+		while ((d & 1) == 0) {
+			d >>= 1;
+			s++;
+		}
+		for (long a : WITNESSES) {
+			long x = modPow(a, d, n);
+			if (x == 1 || x == n - 1) {
+				continue;
+			}
+			boolean composite = true;
+			for (int r = 1; r < s && composite; r++) {
+				x = x * x % n;
+				composite = x != n - 1;
+			}
+			if (composite) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static long modPow(long a, long e, long n) {
+		long result = 1;
+		a %= n;
+		while (e > 0) {
+			if ((e & 1) != 0) {
+				result = result * a % n;
+			}
+			a = a * a % n;
+			e >>= 1;
+		}
+		return result;
+	}
+}
@@ -0,0 +1,392 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class spreads a single multiplication over several worker processes.
+ * The top levels of the Karatsuba recursion are unrolled here: v and m are
+ * split into halves, and the three half-size products z0, z1 and z2 are split
+ * again, until there are at least TASKS_PER_WORKER products per worker. Each
+ * of these products is an independent task, handed out to ShardWorker
+ * processes, separate JVMs running the same engine, over their standard input
+ * and output pipes. The products are then recombined level by level, as
+ * Karatsuba would, so the workers together do no more digit products than a
+ * single engine.
+ *
+ * One dispatching thread per worker keeps exactly one task in flight on that
+ * worker, so faster workers simply take more tasks.
+ *
+ * @author Victor Hazali
+ */
+public class ShardCoordinator implements DigitMultiplier, Closeable {
+
+	/** Constant variables **/
+	// Index in int array storing length of number
+	private static final int	LEN_POS			= 0;
+	private static final int	BUFFER_SIZE		= 1 << 16;
+	// Number of products to split into for each worker
+	private static final int	TASKS_PER_WORKER	= 2;
+	// Operands are not split into halves shorter than this
+	private static final int	MIN_TASK_DIGITS	= 1024;
+	private static final String	JAVA_BINARY		= "bin" + File.separator
+														+ "java";
+	private static final String	CLASSPATH_FLAG	= "-cp";
+
+	/** Member Variables **/
+	private List<Process>		_workers;
+	private List<DataInputStream>	_fromWorkers;
+	private List<DataOutputStream>	_toWorkers;
+
+	/* Constructor */
+
+	/**
+	 * Starts the given number of worker processes on this host, using the
+	 * same Java installation as the current process. The class path of the
+	 * workers is where ShardWorker itself was loaded from, which is not the
+	 * class path of the JVM when the engine runs inside BatchServer.
+	 *
+	 * @param workerCount
+	 *            number of worker processes to start
+	 * @throws IOException
+	 *             when a worker process cannot be started, or its class path
+	 *             cannot be found
+	 */
+	public ShardCoordinator(int workerCount) throws IOException {
+		_workers = new ArrayList<Process>();
+		_fromWorkers = new ArrayList<DataInputStream>();
+		_toWorkers = new ArrayList<DataOutputStream>();
+
+		String java = System.getProperty("java.home") + File.separator
+				+ JAVA_BINARY;
+		String classpath = workerClassPath();
+		for (int i = 0; i < workerCount; i++) {
+			ProcessBuilder builder = new ProcessBuilder(java, CLASSPATH_FLAG,
+					classpath, ShardWorker.class.getName());
+			builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+			Process worker = builder.start();
+			_workers.add(worker);
+			_fromWorkers.add(new DataInputStream(new BufferedInputStream(
+					worker.getInputStream(), BUFFER_SIZE)));
+			_toWorkers.add(new DataOutputStream(new BufferedOutputStream(
+					worker.getOutputStream(), BUFFER_SIZE)));
+		}
+	}
+
+	/* Accessors */
+
+	public int getWorkerCount() {
+		return _workers.size();
+	}
+
+	/* Public Methods */
+
+	/**
+	 * Multiplies v and m on the worker processes. Only one multiplication at a
+	 * time uses the workers, as each holds a single pipe per worker. If a task
+	 * fails, the pipes are out of step with the workers, so all workers are
+	 * stopped and the coordinator cannot be used again.
+	 *
+	 * @throws IllegalStateException
+	 *             when a worker process fails, or the workers have been
+	 *             stopped
+	 */
+	@Override
+	public synchronized int[] multiplyDigits(int[] v, int[] m, final int base) {
+		if (_workers.isEmpty()) {
+			throw new IllegalStateException("Worker processes are stopped");
+		}
+		int depth = 0, tasks = 1;
+		int size = Math.max(v[LEN_POS], m[LEN_POS]);
+		while (tasks < TASKS_PER_WORKER * getWorkerCount()
+				&& size / 2 >= MIN_TASK_DIGITS) {
+			depth++;
+			tasks *= 3;
+			size = size / 2 + 1;
+		}
+		RadixDivider divider = RadixDivider.forBase(base);
+		final List<int[][]> pairs = new ArrayList<int[][]>();
+		split(v, m, depth, divider, pairs);
+
+		final int[][] products = new int[pairs.size()][];
+		final AtomicInteger nextTask = new AtomicInteger(0);
+		final Throwable[] failure = new Throwable[1];
+
+		List<Thread> dispatchers = new ArrayList<Thread>();
+		for (int w = 0; w < getWorkerCount(); w++) {
+			final DataInputStream in = _fromWorkers.get(w);
+			final DataOutputStream out = _toWorkers.get(w);
+			Thread dispatcher = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						int task = nextTask.getAndIncrement();
+						while (task < pairs.size() && !hasFailed(failure)) {
+							out.writeInt(base);
+							ShardWorker.writeNumber(out, pairs.get(task)[0]);
+							ShardWorker.writeNumber(out, pairs.get(task)[1]);
+							out.flush();
+							products[task] = ShardWorker.readNumber(in);
+							task = nextTask.getAndIncrement();
+						}
+					} catch (Throwable e) {
+						synchronized (failure) {
+							if (failure[0] == null) {
+								failure[0] = e;
+							}
+						}
+					}
+				}
+			});
+			dispatchers.add(dispatcher);
+			dispatcher.start();
+		}
+
+		try {
+			for (Thread dispatcher : dispatchers) {
+				dispatcher.join();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			stop();
+			throw new IllegalStateException(e);
+		}
+		if (failure[0] != null) {
+			stop();
+			throw new IllegalStateException("Worker process failed",
+					failure[0]);
+		}
+
+		int[] product = combine(v, m, depth, divider, products, new int[1]);
+		int[] result = new int[v[LEN_POS] + m[LEN_POS] + 2];
+		System.arraycopy(product, 1, result, 1, product[LEN_POS]);
+
+		// Length includes the last digit only if there was a final carry
+		int resLen = v[LEN_POS] + m[LEN_POS];
+		if (resLen > 1 && result[resLen] == 0) {
+			resLen--;
+		}
+		result[LEN_POS] = resLen;
+		return result;
+	}
+
+	/**
+	 * Closes the pipes to all workers, which makes them exit, and waits for
+	 * them to finish.
+	 */
+	@Override
+	public void close() throws IOException {
+		for (DataOutputStream out : _toWorkers) {
+			out.close();
+		}
+		try {
+			for (Process worker : _workers) {
+				worker.waitFor();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		_workers.clear();
+		_fromWorkers.clear();
+		_toWorkers.clear();
+	}
+
+	/* Private Methods */
+
+	/**
+	 * Returns the directory or jar ShardWorker was loaded from.
+	 */
+	private static String workerClassPath() throws IOException {
+		CodeSource source = ShardWorker.class.getProtectionDomain()
+				.getCodeSource();
+		if (source == null) {
+			throw new IOException("No class path for "
+					+ ShardWorker.class.getName());
+		}
+		try {
+			return new File(source.getLocation().toURI()).getPath();
+		} catch (URISyntaxException e) {
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * Stops all workers after a failure, closing their pipes without waiting
+	 * for them to finish.
+	 */
+	private void stop() {
+		for (Process worker : _workers) {
+			worker.destroy();
+		}
+		for (DataOutputStream out : _toWorkers) {
+			try {
+				out.close();
+			} catch (IOException e) {
+				// The worker is gone already
+			}
+		}
+		for (DataInputStream in : _fromWorkers) {
+			try {
+				in.close();
+			} catch (IOException e) {
+				// The worker is gone already
+			}
+		}
+		_workers.clear();
+		_fromWorkers.clear();
+		_toWorkers.clear();
+	}
+
+	private static boolean hasFailed(Throwable[] failure) {
+		synchronized (failure) {
+			return failure[0] != null;
+		}
+	}
+
+	/**
+	 * Unrolls depth levels of Karatsuba on v and m, adding the operand pairs
+	 * of the products at the bottom to pairs. The products of each level are
+	 * added in the order z0, z2, z1, the order combine takes them back in.
+	 */
+	private static void split(int[] v, int[] m, int depth,
+			RadixDivider divider, List<int[][]> pairs) {
+		if (depth == 0) {
+			pairs.add(new int[][] { slice(v, 0, v[LEN_POS]),
+					slice(m, 0, m[LEN_POS]) });
+			return;
+		}
+		int len = Math.max(v[LEN_POS], m[LEN_POS]) / 2;
+		int[] vLow = slice(v, 0, len), vHigh = slice(v, len, v[LEN_POS]);
+		int[] mLow = slice(m, 0, len), mHigh = slice(m, len, m[LEN_POS]);
+
+		split(vLow, mLow, depth - 1, divider, pairs);
+		split(vHigh, mHigh, depth - 1, divider, pairs);
+		split(add(vLow, vHigh, divider), add(mLow, mHigh, divider),
+				depth - 1, divider, pairs);
+	}
+
+	/**
+	 * Recombines the products computed for the pairs split added, taking them
+	 * from products starting at next[0].
+	 */
+	private static int[] combine(int[] v, int[] m, int depth,
+			RadixDivider divider, int[][] products, int[] next) {
+		if (depth == 0) {
+			return products[next[0]++];
+		}
+		int len = Math.max(v[LEN_POS], m[LEN_POS]) / 2;
+		int[] vLow = slice(v, 0, len), vHigh = slice(v, len, v[LEN_POS]);
+		int[] mLow = slice(m, 0, len), mHigh = slice(m, len, m[LEN_POS]);
+
+		int[] z0 = combine(vLow, mLow, depth - 1, divider, products, next);
+		int[] z2 = combine(vHigh, mHigh, depth - 1, divider, products, next);
+		int[] z1 = combine(add(vLow, vHigh, divider),
+				add(mLow, mHigh, divider), depth - 1, divider, products, next);
+
+		// Z2 * B^(2*R) + (Z1-Z2-Z0)*B^R + Z0, the positive terms first
+		int[] result = new int[Math.max(v[LEN_POS] + m[LEN_POS],
+				Math.max(z2[LEN_POS] + 2 * len, z1[LEN_POS] + len)) + 2];
+		addShifted(result, z0, 0, divider);
+		addShifted(result, z2, 2 * len, divider);
+		addShifted(result, z1, len, divider);
+		subtractShifted(result, z0, len, divider);
+		subtractShifted(result, z2, len, divider);
+
+		int resLen = result.length - 1;
+		while (resLen > 1 && result[resLen] == 0) {
+			resLen--;
+		}
+		result[LEN_POS] = resLen;
+		return result;
+	}
+
+	/**
+	 * Copies up to size digits starting at digit index from (0 being the least
+	 * significant) into a new number. Leading zeroes are not counted in its
+	 * length, and a slice past the end of the number is 0.
+	 */
+	private static int[] slice(int[] number, int from, int size) {
+		int len = Math.min(size, number[LEN_POS] - from);
+		if (len < 1) {
+			int[] zero = new int[2];
+			zero[LEN_POS] = 1;
+			return zero;
+		}
+		int[] block = new int[len + 1];
+		System.arraycopy(number, from + 1, block, 1, len);
+		while (len > 1 && block[len] == 0) {
+			len--;
+		}
+		block[LEN_POS] = len;
+		return block;
+	}
+
+	/**
+	 * Returns the sum of two numbers, without leading zeroes.
+	 */
+	private static int[] add(int[] first, int[] second, RadixDivider divider) {
+		int[] sum = new int[Math.max(first[LEN_POS], second[LEN_POS]) + 2];
+		addShifted(sum, first, 0, divider);
+		addShifted(sum, second, 0, divider);
+
+		int len = sum.length - 1;
+		while (len > 1 && sum[len] == 0) {
+			len--;
+		}
+		sum[LEN_POS] = len;
+		return sum;
+	}
+
+	/**
+	 * Adds product into result, shifted up by offset digits, and propagates
+	 * the carry as far as needed.
+	 */
+	private static void addShifted(int[] result, int[] product, int offset,
+			RadixDivider divider) {
+		int base = divider.getBase();
+		int carry = 0, sum = 0, index = offset + 1;
+
+		for (int i = 1; i <= product[LEN_POS]; i++, index++) {
+			sum = result[index] + product[i] + carry;
+			carry = divider.quotient(sum);
+			result[index] = sum - carry * base;
+		}
+		while (carry != 0) {
+			sum = result[index] + carry;
+			carry = divider.quotient(sum);
+			result[index] = sum - carry * base;
+			index++;
+		}
+	}
+
+	/**
+	 * Subtracts product from result, shifted up by offset digits, and
+	 * propagates the borrow as far as needed. The difference must not be
+	 * negative.
+	 */
+	private static void subtractShifted(int[] result, int[] product,
+			int offset, RadixDivider divider) {
+		int base = divider.getBase();
+		int borrow = 0, difference = 0, index = offset + 1;
+
+		for (int i = 1; i <= product[LEN_POS]; i++, index++) {
+			difference = result[index] - product[i] - borrow;
+			borrow = difference < 0 ? 1 : 0;
+			result[index] = difference + borrow * base;
+		}
+		while (borrow != 0) {
+			difference = result[index] - borrow;
+			borrow = difference < 0 ? 1 : 0;
+			result[index] = difference + borrow * base;
+			index++;
+		}
+	}
+}
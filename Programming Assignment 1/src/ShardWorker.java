@@ -0,0 +1,91 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+
+/**
+ * This class is a worker process for ShardCoordinator. It reads the products
+ * to compute from its standard input, multiplies them with the same engine as
+ * SpaceshipMomentum and writes the products to its standard output, until its
+ * input is closed.
+ * 
+ * <pre>
+ * Request frame:  base, then v and m, each as: length, digits
+ * Response frame: length, digits
+ * </pre>
+ * 
+ * All numbers in a frame are ints, digits are bytes stored least significant
+ * first.
+ * 
+ * @author Victor Hazali
+ */
+public class ShardWorker {
+
+	/** Constant variables **/
+	// Index in int array storing length of number
+	private static final int	LEN_POS		= 0;
+	private static final int	BUFFER_SIZE	= 1 << 16;
+
+	/**
+	 * Reads a number in frame format.
+	 * 
+	 * @param in
+	 *            stream to read from
+	 * @return the number, stored in reverse order with its length in the first
+	 *         index
+	 * @throws IOException
+	 *             when the stream cannot be read from
+	 */
+	public static int[] readNumber(DataInputStream in) throws IOException {
+		int len = in.readInt();
+		int[] number = new int[len + 1];
+		for (int i = 1; i <= len; i++) {
+			number[i] = in.readByte();
+		}
+		number[LEN_POS] = len;
+		return number;
+	}
+
+	/**
+	 * Writes a number in frame format.
+	 * 
+	 * @param out
+	 *            stream to write to
+	 * @param number
+	 *            the number, stored in reverse order with its length in the
+	 *            first index
+	 * @throws IOException
+	 *             when the stream cannot be written to
+	 */
+	public static void writeNumber(DataOutputStream out, int[] number)
+			throws IOException {
+		out.writeInt(number[LEN_POS]);
+		for (int i = 1; i <= number[LEN_POS]; i++) {
+			out.writeByte(number[i]);
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		DigitMultiplier engine = new SpaceshipMomentum();
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				System.in, BUFFER_SIZE));
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				System.out, BUFFER_SIZE));
+
+		while (true) {
+			int base;
+			try {
+				base = in.readInt();
+			} catch (EOFException e) {
+				break;
+			}
+			int[] v = readNumber(in);
+			int[] m = readNumber(in);
+			writeNumber(out, engine.multiplyDigits(v, m, base));
+			out.flush();
+		}
+		out.close();
+	}
+}
@@ -1,12 +1,27 @@
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.PrintStream;
 import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 import java.util.Scanner;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This class will quickly calculate the ship's momentum based on the velocity
@@ -27,6 +42,61 @@ import java.util.Scanner;
  *             T sets of inputs are entered. All numbers V and M are valid
  *             numbers in the specified base B (i.e. for a base 2, there will
  *             only be 0 and 1)
+ * @options --stream: each product is written out as it is computed, with its
+ *          digits streamed from the least significant digit upwards, instead
+ *          of holding all results until the end. The longer operand is
+ *          multiplied block by block on the engine the other options choose.
+ *          See StreamingMultiplier.
+ *          --verify: each product is checked modulo several random primes. A
+ *          mismatch is reported on the standard error stream. See
+ *          ProductVerifier.
+ *          --rerun: together with --verify, a product failing verification
+ *          is recomputed with the quadratic long multiplication.
+ *          --pipeline: pairs are read, multiplied and written by three
+ *          concurrent stages connected by small bounded queues, so only a
+ *          few pairs are held in memory at any time. Takes precedence over
+ *          --stream.
+ *          --offheap: operands are read character by character into off-heap
+ *          digit stores and multiplied block by block, so huge pairs run with
+ *          a small heap. See OffHeapDigits. Takes precedence over the other
+ *          modes.
+ *          --outofcore=DIR: like --offheap, but operands and products are
+ *          kept in memory-mapped files in DIR and multiplied with
+ *          OutOfCoreMultiplier. Progress is checkpointed, so rerunning a
+ *          killed job with the same input resumes where it stopped.
+ *          --shards=N: products of operands with at least SHARD_THRESHOLD
+ *          digits are split into Karatsuba subproducts computed by N local
+ *          worker processes. See ShardCoordinator.
+ *          --budget=MS: each pair is allowed MS milliseconds. Pairs are
+ *          admitted to the engine the other options choose, sent to the
+ *          fastest other enabled engine (worker processes, --ntt or --rns)
+ *          if only that one is fast enough, or rejected with an empty output
+ *          line if none is estimated to finish in time. Pairs are evaluated
+ *          on all processors, longest first, and the estimated and actual
+ *          time of each pair is reported on the standard error stream.
+ *          Applies to the default mode only. See BudgetScheduler.
+ *          --rns: products are computed in a residue number system, as limb
+ *          convolutions modulo a few word-size primes in parallel. See
+ *          RnsMultiplier.
+ *          --ntt: products are computed with a parallel number theoretic
+ *          transform, modulo a second prime as well where the column sums
+ *          need it, and with the other engines where even that is too short.
+ *          Takes precedence over --rns. See NttMultiplier.
+ *          --binary: operands are read as binary frames instead of text,
+ *          velocity and mass alternating until the end of the input, and
+ *          each momentum is written as a binary frame holding the digits and
+ *          radix point of its text output. See DigitFrame for the layout.
+ *          Takes precedence over the other modes.
+ *          --stats: the time each pair spends parsing, multiplying,
+ *          recombining and formatting, and the bytes it allocates, are
+ *          recorded, and percentiles for each algorithm, base and size are
+ *          reported on the standard error stream at exit. Applies to the
+ *          default, --budget, --pipeline and --binary modes. See PhaseStats.
+ *          --benchmark: no input is read. Instead the multiplication kernels
+ *          are timed on random operands of 2000 to 20000 digits.
+ *          --train: no input is read and nothing is written. Instead the hot
+ *          paths are run on synthetic pairs, so launch.sh can archive the
+ *          classes they load.
  * @constraints V and M are of at least 1 and at most 20005 digits. T is at
  *              least 1 and at most 20. Total length of all numbers in all T
  *              pairs is less than 40010 digits. Memory: 256M. Running time: 2s
@@ -39,7 +109,7 @@ import java.util.Scanner;
  * </pre>
  * @author Victor Hazali
  */
-public class SpaceshipMomentum {
+public class SpaceshipMomentum implements DigitMultiplier {
 
 	/** Constant variables **/
 	private static final boolean		DEBUG_MODE		= false;
@@ -48,24 +118,135 @@ public class SpaceshipMomentum {
 	// ASCII value for '.'
 	private static final int			RADIX_PT		= -2;
 	// To decide when to stop recursive call for Karatsuba Algorithm
-	private static final int			CUT_OFF			= 3;
+	private static final int			CUT_OFF			= 128;
+	// Modulus standing for exact column sums in karatsubaColumns
+	public static final long			EXACT			= 0;
+	// Modular column sums are reduced once they reach this, so adding a
+	// product of two residues below 2^31 can never overflow
+	private static final long			REDUCE_LIMIT	= 1L << 62;
+	// Command line option to multiply in a residue number system
+	private static final String			RNS_OPTION			= "--rns";
+	// Command line option to multiply with a number theoretic transform
+	private static final String			NTT_OPTION			= "--ntt";
+	// Cost of a unit of Karatsuba's work in multiply-adds of SparseDigits
+	private static final double			SPARSE_ADVANTAGE	= 8.0;
 	// Index in int array storing length of number
 	private static final int			LEN_POS			= 0;
+	// Command line option to enable streaming multiplication
+	private static final String			STREAM_OPTION	= "--stream";
+	// Command line options to enable verification of products
+	private static final String			VERIFY_OPTION	= "--verify";
+	private static final String			RERUN_OPTION	= "--rerun";
+	// Number of random primes to verify each product against
+	private static final int			VERIFY_PRIMES	= 3;
+	// Command line option to enable the read/multiply/write pipeline
+	private static final String			PIPELINE_OPTION	= "--pipeline";
+	// Capacity of each queue between two stages of the pipeline
+	private static final int			PIPELINE_DEPTH	= 1;
+	// Marks the end of the pairs flowing through the pipeline
+	private static final MomentumPair	END_OF_PAIRS	= new MomentumPair(0,
+																null, null);
+	// Command line option to keep operands off the heap
+	private static final String			OFF_HEAP_OPTION	= "--offheap";
+	// Command line option to keep operands in files, followed by a directory
+	private static final String			OUT_OF_CORE_OPTION	= "--outofcore=";
+	private static final String			PAIR_FILE_PREFIX	= "pair";
+	private static final String			VELOCITY_SUFFIX		= ".v";
+	private static final String			MASS_SUFFIX			= ".m";
+	// Command line option to use worker processes, followed by their number
+	private static final String			SHARDS_OPTION		= "--shards=";
+	// Minimum length of both operands for a product to be sharded
+	private static final int			SHARD_THRESHOLD		= 4096;
+	// Command line option to set the time allowed per pair, in milliseconds
+	private static final String			BUDGET_OPTION		= "--budget=";
+	private static final long			NANOS_PER_MILLI		= 1000000L;
+	// Engines to multiply on, AUTO_ENGINE choosing one from the options
+	private static final int			AUTO_ENGINE			= -2;
+	private static final int			KARATSUBA_ENGINE	= 0;
+	private static final int			SHARDED_ENGINE		= 1;
+	private static final int			NTT_ENGINE			= 2;
+	private static final int			RNS_ENGINE			= 3;
+	private static final String			KARATSUBA_NAME		= "karatsuba";
+	private static final String			SHARDED_NAME		= "shards";
+	private static final String			NTT_NAME			= "ntt";
+	private static final String			RNS_NAME			= "rns";
+	private static final String			SPECIAL_NAME		= "special";
+	// Cost model of karatsubaMult: rate * n^log2(3) nanoseconds
+	private static final double			KARATSUBA_EXPONENT	= Math.log(3)
+																/ Math.log(2);
+	private static final double			KARATSUBA_RATE		= 40.0;
+	// Cost model of NttMultiplier: rate * n * log2(n) nanoseconds, n = |v|+|m|
+	private static final double			NTT_RATE			= 20.0;
+	// Cost model of RnsMultiplier, Karatsuba on limbs of several digits
+	private static final double			RNS_EXPONENT		= KARATSUBA_EXPONENT;
+	private static final double			RNS_RATE			= 8.0;
+	// Command line option to time the multiplication kernels
+	private static final String			BENCHMARK_OPTION	= "--benchmark";
+	private static final String			BINARY_OPTION		= "--binary";
+	private static final String			STATS_OPTION		= "--stats";
+	// Initial size of the buffer binary frames are read into
+	private static final int			BINARY_BUFFER		= 1 << 16;
+	// Operand lengths, radix base and repetitions used by the benchmark
+	private static final int[]			BENCHMARK_SIZES		= { 2000, 5000,
+			10000, 20000									};
+	private static final int			BENCHMARK_BASE		= 10;
+	private static final int			BENCHMARK_RUNS		= 3;
+	// Command line option to run the hot paths on synthetic pairs, as the
+	// training run of launch.sh
+	private static final String			TRAIN_OPTION		= "--train";
+	// Operand lengths, repetitions and seed of the training run
+	private static final int[]			TRAIN_SIZES			= { 1, 30, 300,
+			3000, 20000									};
+	private static final int			TRAIN_ROUNDS		= 6;
+	private static final long			TRAIN_SEED			= 3230;
+	private static final int			MIN_BASE			= 2;
+	private static final int			MAX_BASE			= Character.MAX_RADIX;
 
 	/** Output Strings **/
+	private static final String			BENCHMARK_HEADER	= "digits\tlongMult\tdeferredMult\tkaratsubaMult\trnsMult\tnttMult (ms)";
 	private static final String			INPUT_ERROR		= "Failed to read input"
 																+ "\n";
 	private static final String			T_MISMATCH		= "Number of test cases does not match value T."
 																+ "\n";
+	private static final String			VERIFY_FAILED	= "Product failed verification in base ";
+	private static final String			PAIR_FAILED		= "Pair %d failed: %s";
+	private static final String			FRAME_MISMATCH	= "Velocity and mass frames differ in radix base or are incomplete";
 
 	/** Member Variables **/
-	private static boolean				initialised		= false;
+	private boolean						initialised		= false;
 	private PrintWriter					_pw;
 	private int							_pairs;
 	private List<Integer>				_bases;
 	private List<String>				_velocities;
 	private List<String>				_masses;
 	private List<String>				_results;
+	private boolean						_streaming;
+	private StreamingMultiplier			_streamer;
+	private ProductVerifier				_verifier;
+	private boolean						_rerunning;
+	private boolean						_pipelined;
+	private boolean						_offHeap;
+	private OutOfCoreMultiplier			_outOfCore;
+	private File						_workDir;
+	private ShardCoordinator			_shards;
+	private BudgetScheduler				_scheduler;
+	private RnsMultiplier				_rns;
+	private NttMultiplier				_ntt;
+	private boolean						_binary;
+	private PhaseStats					_stats;
+	private InputStream					_input;
+	private OutputStream				_output;
+
+	/* Constructor */
+
+	public SpaceshipMomentum() {
+		this(INPUT_STREAM, OUTPUT_STREAM);
+	}
+
+	public SpaceshipMomentum(InputStream input, OutputStream output) {
+		_input = input;
+		_output = output;
+	}
 
 	/** Accessors and Modifiers **/
 
@@ -141,29 +322,291 @@ public class SpaceshipMomentum {
 		getResults().add(result);
 	}
 
+	public boolean isStreaming() {
+		return _streaming;
+	}
+
+	public void setStreaming(boolean streaming) {
+		_streaming = streaming;
+	}
+
+	public boolean isVerifying() {
+		return _verifier != null;
+	}
+
+	public void setVerifying(boolean verifying) {
+		if (verifying) {
+			_verifier = new ProductVerifier(VERIFY_PRIMES, new Random());
+		} else {
+			_verifier = null;
+		}
+	}
+
+	public boolean isRerunning() {
+		return _rerunning;
+	}
+
+	public void setRerunning(boolean rerunning) {
+		_rerunning = rerunning;
+	}
+
+	public boolean isPipelined() {
+		return _pipelined;
+	}
+
+	public void setPipelined(boolean pipelined) {
+		_pipelined = pipelined;
+	}
+
+	public boolean isOffHeap() {
+		return _offHeap;
+	}
+
+	public void setOffHeap(boolean offHeap) {
+		_offHeap = offHeap;
+	}
+
+	public boolean isOutOfCore() {
+		return _outOfCore != null;
+	}
+
+	/**
+	 * Enables the out-of-core mode, which also implies the off-heap mode.
+	 * 
+	 * @param directory
+	 *            directory to keep the operand, product and checkpoint files in
+	 */
+	public void setOutOfCore(File directory) {
+		directory.mkdirs();
+		_outOfCore = new OutOfCoreMultiplier(this, directory);
+		_workDir = directory;
+		setOffHeap(true);
+	}
+
+	public boolean isSharded() {
+		return _shards != null;
+	}
+
+	/**
+	 * Starts the worker processes used to compute large products.
+	 * 
+	 * @param workerCount
+	 *            number of worker processes
+	 * @throws IOException
+	 *             when a worker process cannot be started
+	 */
+	public void setShards(int workerCount) throws IOException {
+		_shards = new ShardCoordinator(workerCount);
+	}
+
+	public boolean isRns() {
+		return _rns != null;
+	}
+
+	public void setRns(boolean rns) {
+		if (rns) {
+			_rns = new RnsMultiplier();
+		} else {
+			_rns = null;
+		}
+	}
+
+	public boolean isNtt() {
+		return _ntt != null;
+	}
+
+	public void setNtt(boolean ntt) {
+		if (ntt) {
+			_ntt = new NttMultiplier();
+		} else {
+			_ntt = null;
+		}
+	}
+
+	public boolean isBinary() {
+		return _binary;
+	}
+
+	public void setBinary(boolean binary) {
+		_binary = binary;
+	}
+
+	public boolean isRecordingStats() {
+		return _stats != null;
+	}
+
+	public void setRecordingStats(boolean recordingStats) {
+		if (recordingStats) {
+			_stats = new PhaseStats();
+		} else {
+			_stats = null;
+		}
+	}
+
+	public boolean isBudgeted() {
+		return _scheduler != null;
+	}
+
+	/**
+	 * Sets the time allowed for each pair, which enables the budget scheduler.
+	 * 
+	 * @param budget
+	 *            running time allowed per pair, in milliseconds
+	 */
+	public void setBudget(long budget) {
+		_scheduler = new BudgetScheduler(budget * NANOS_PER_MILLI);
+	}
+
 	/**
 	 * Runs the program to calculate the spaceship's momentum based on inputs.
+	 * 
+	 * @return the exit status: 0 on success, 1 if the input cannot be read
+	 *         and 2 if it does not match the T value stated
 	 */
-	public void run() {
+	public int run() {
 		initialise();
 		try {
-			readInput();
-			evaluateInputs();
-			displayResults();
+			if (isBinary()) {
+				binaryResults();
+			} else if (isOffHeap()) {
+				offHeapResults();
+			} else if (isPipelined()) {
+				pipelineResults();
+			} else if (isStreaming()) {
+				readInput();
+				streamResults();
+			} else if (isBudgeted()) {
+				readInput();
+				budgetedInputs();
+				displayResults();
+			} else {
+				readInput();
+				evaluateInputs();
+				displayResults();
+			}
 			_pw.close();
+			if (isSharded()) {
+				_shards.close();
+			}
+			if (isRecordingStats()) {
+				_stats.report(System.err);
+			}
 		} catch (IOException e) {
 			if (DEBUG_MODE) {
 				showToUser(INPUT_ERROR);
 				e.printStackTrace();
 			}
-			System.exit(1);
+			return 1;
 		} catch (IllegalArgumentException e) {
 			if (DEBUG_MODE) {
 				e.printStackTrace();
 			}
 			showToUser(T_MISMATCH);
-			System.exit(2);
+			return 2;
+		}
+		return 0;
+	}
+
+	/**
+	 * Times the multiplication kernels on random operands of BENCHMARK_SIZES
+	 * digits and writes the best of BENCHMARK_RUNS runs for each, in
+	 * milliseconds.
+	 */
+	public void benchmark() {
+		initialise();
+		Random random = new Random();
+		RnsMultiplier rns = new RnsMultiplier();
+		NttMultiplier ntt = new NttMultiplier();
+		_pw.println(BENCHMARK_HEADER);
+		for (int size : BENCHMARK_SIZES) {
+			int[] v = randomNumber(size, random);
+			int[] m = randomNumber(size, random);
+			long[] best = new long[5];
+			Arrays.fill(best, Long.MAX_VALUE);
+			for (int run = 0; run < BENCHMARK_RUNS; run++) {
+				for (int kernel = 0; kernel < best.length; kernel++) {
+					long start = System.nanoTime();
+					switch (kernel) {
+						case 0:
+							longMult(v, m, BENCHMARK_BASE);
+							break;
+						case 1:
+							deferredMult(v, m, BENCHMARK_BASE);
+							break;
+						case 2:
+							karatsubaMult(v, m, BENCHMARK_BASE);
+							break;
+						case 3:
+							rns.multiplyDigits(v, m, BENCHMARK_BASE);
+							break;
+						default:
+							ntt.multiplyDigits(v, m, BENCHMARK_BASE);
+							break;
+					}
+					best[kernel] = Math.min(best[kernel], System.nanoTime()
+							- start);
+				}
+			}
+			_pw.print(size);
+			for (long time : best) {
+				_pw.print("\t" + time / NANOS_PER_MILLI);
+			}
+			_pw.println();
+			_pw.flush();
 		}
+		_pw.close();
+	}
+
+	/**
+	 * Evaluates synthetic pairs of TRAIN_SIZES digits in random radix bases,
+	 * some of them with radix points, TRAIN_ROUNDS times with Karatsuba, the
+	 * number theoretic transform and the residue number system, and passes
+	 * the products through binary frames. Nothing is written. Running this
+	 * once with the archiving options of the JVM, as launch.sh does, leaves
+	 * the classes of the hot paths, and their profiles where the JVM keeps
+	 * them, in an archive that later runs start from.
+	 */
+	public void train() {
+		initialise();
+		Random random = new Random(TRAIN_SEED);
+		boolean ntt = isNtt(), rns = isRns();
+		ByteBuffer frames = ByteBuffer.allocate(BINARY_BUFFER);
+		for (int round = 0; round < TRAIN_ROUNDS; round++) {
+			setNtt(round % 3 == 1);
+			setRns(round % 3 == 2);
+			setPairs(0);
+			setBases(new ArrayList<Integer>());
+			setVelocities(new ArrayList<String>());
+			setMasses(new ArrayList<String>());
+			setResults(new ArrayList<String>());
+			for (int size : TRAIN_SIZES) {
+				int base = MIN_BASE + random.nextInt(MAX_BASE - MIN_BASE + 1);
+				addBase(base);
+				addVelocity(randomOperand(size, base, random));
+				addMass(randomOperand(size, base, random));
+				setPairs(getPairs() + 1);
+			}
+			evaluateInputs();
+
+			// Sending the smaller products through frames
+			for (int i = 0; i < getPairs(); i++) {
+				String result = getResult(i);
+				int[] digits = new int[result.length() + 1];
+				for (int j = 0; j < result.length(); j++) {
+					int digit = charToInt(result.charAt(result.length() - 1 - j));
+					digits[++digits[LEN_POS]] = isRadixPt(digit) ? 0 : digit;
+				}
+				DigitFrame frame = new DigitFrame(getBase(i), 0, digits);
+				if (frame.getFrameSize() <= frames.capacity()) {
+					frames.clear();
+					frame.write(frames);
+					frames.flip();
+					DigitFrame.read(frames);
+				}
+			}
+		}
+		setNtt(ntt);
+		setRns(rns);
 	}
 
 	/**
@@ -173,7 +616,7 @@ public class SpaceshipMomentum {
 	public void initialise() {
 		if (!initialised) {
 			_pw = new PrintWriter(new BufferedWriter(new OutputStreamWriter(
-					OUTPUT_STREAM)));
+					_output)));
 			setPairs(0);
 			setBases(new ArrayList<Integer>());
 			setVelocities(new ArrayList<String>());
@@ -192,7 +635,7 @@ public class SpaceshipMomentum {
 	 *             when the number of input does not match the T value stated
 	 */
 	private void readInput() throws IOException, IllegalArgumentException {
-		Scanner sc = new Scanner(INPUT_STREAM);
+		Scanner sc = new Scanner(_input);
 		setPairs(Integer.parseInt(sc.nextLine()));
 		for (int i = 0; i < _pairs; i++) {
 			if (!sc.hasNext()) {
@@ -204,21 +647,558 @@ public class SpaceshipMomentum {
 			addVelocity(sc.nextLine());
 			addMass(sc.nextLine());
 		}
-		sc.close();
+		sc.close();
+	}
+
+	/**
+	 * Reads, evaluates and displays all input sets in three concurrent stages.
+	 * The current thread parses pair i+1 while a second thread multiplies pair
+	 * i and a third writes out pair i-1. The stages are connected by bounded
+	 * queues, so memory use is bounded by the largest pairs rather than the
+	 * whole input.
+	 * 
+	 * If the multiplying or writing stage fails, it keeps taking pairs off its
+	 * queue without working on them, so the stages before it never block, and
+	 * END_OF_PAIRS still reaches the writer. The failure is then thrown here,
+	 * as if the pairs had been evaluated on the current thread.
+	 * 
+	 * @throws IOException
+	 *             when the specified input stream cannot be read from.
+	 * @throws IllegalArgumentException
+	 *             when the number of input does not match the T value stated,
+	 *             or a number cannot be parsed
+	 */
+	private void pipelineResults() throws IOException,
+			IllegalArgumentException {
+		final BlockingQueue<MomentumPair> parsed = new ArrayBlockingQueue<MomentumPair>(
+				PIPELINE_DEPTH);
+		final BlockingQueue<MomentumPair> computed = new ArrayBlockingQueue<MomentumPair>(
+				PIPELINE_DEPTH);
+		final Throwable[] failure = new Throwable[1];
+
+		Thread multiplier = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					MomentumPair pair = parsed.take();
+					while (pair != END_OF_PAIRS) {
+						if (getFailure(failure) == null) {
+							try {
+								pair.setResult(calculateMomentum(
+										pair.getBase(), pair.getVelocity(),
+										pair.getMass()));
+							} catch (Throwable e) {
+								setFailure(failure, e);
+							}
+						}
+						if (getFailure(failure) == null) {
+							computed.put(pair);
+						}
+						pair = parsed.take();
+					}
+					computed.put(END_OF_PAIRS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+
+		Thread writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					MomentumPair pair = computed.take();
+					while (pair != END_OF_PAIRS) {
+						if (getFailure(failure) == null) {
+							try {
+								showToUser(pair.getResult() + "\n");
+							} catch (Throwable e) {
+								setFailure(failure, e);
+							}
+						}
+						pair = computed.take();
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+
+		multiplier.start();
+		writer.start();
+
+		Scanner sc = new Scanner(_input);
+		try {
+			setPairs(Integer.parseInt(sc.nextLine()));
+			for (int i = 0; i < _pairs && getFailure(failure) == null; i++) {
+				if (!sc.hasNext()) {
+					throw new IllegalArgumentException(
+							"insufficient input to evaluate\n");
+				}
+				int base = Integer.parseInt(sc.nextLine());
+				parsed.put(new MomentumPair(base, sc.nextLine(), sc
+						.nextLine()));
+			}
+			parsed.put(END_OF_PAIRS);
+			writer.join();
+		} catch (InterruptedException e) {
+			throw new IOException(e);
+		} finally {
+			sc.close();
+			multiplier.interrupt();
+			writer.interrupt();
+		}
+
+		Throwable cause = getFailure(failure);
+		if (cause instanceof RuntimeException) {
+			throw (RuntimeException) cause;
+		}
+		if (cause instanceof Error) {
+			throw (Error) cause;
+		}
+		if (cause != null) {
+			throw new IOException(cause);
+		}
+	}
+
+	/**
+	 * Keeps the first failure of the stages of the pipeline.
+	 * 
+	 * @param failure
+	 *            array holding the failure shared by the stages
+	 * @param cause
+	 *            what a stage threw
+	 */
+	private static void setFailure(Throwable[] failure, Throwable cause) {
+		synchronized (failure) {
+			if (failure[0] == null) {
+				failure[0] = cause;
+			}
+		}
+	}
+
+	private static Throwable getFailure(Throwable[] failure) {
+		synchronized (failure) {
+			return failure[0];
+		}
+	}
+
+	/**
+	 * Reads, evaluates and displays all input sets one at a time, keeping the
+	 * operands and products in OffHeapDigits. Each product is released as
+	 * soon as it has been written out.
+	 * 
+	 * @throws IOException
+	 *             when the specified input stream cannot be read from.
+	 * @throws IllegalArgumentException
+	 *             when the number of input does not match the T value stated
+	 */
+	private void offHeapResults() throws IOException, IllegalArgumentException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(
+				_input));
+		try {
+			setPairs(Integer.parseInt(reader.readLine().trim()));
+			for (int i = 0; i < _pairs; i++) {
+				String line = reader.readLine();
+				if (line == null) {
+					throw new IllegalArgumentException(
+							"insufficient input to evaluate\n");
+				}
+				int base = Integer.parseInt(line.trim());
+				String name = PAIR_FILE_PREFIX + i;
+				try (OffHeapDigits velocity = readOperand(reader, name
+						+ VELOCITY_SUFFIX);
+						OffHeapDigits mass = readOperand(reader, name
+								+ MASS_SUFFIX)) {
+					writeOffHeapMomentum(base, velocity, mass, name);
+				}
+				showToUser("\n");
+			}
+			discardFiles();
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Reads an operand off the heap. In out-of-core mode, the operand is
+	 * stored in the given file of the working directory.
+	 * 
+	 * @param reader
+	 *            reader to read the operand from
+	 * @param fileName
+	 *            name of the file to store the operand in
+	 * @return the operand read
+	 * @throws IOException
+	 *             when the input cannot be read or the file cannot be written
+	 */
+	private OffHeapDigits readOperand(BufferedReader reader, String fileName)
+			throws IOException {
+		if (isOutOfCore()) {
+			return MappedDigits.store(reader, new File(_workDir, fileName));
+		}
+		return OffHeapDigits.read(reader);
+	}
+
+	/**
+	 * Deletes the files of all pairs once the whole job has been written out.
+	 * Until then they are kept, so that a rerun of a killed job can resume.
+	 */
+	private void discardFiles() {
+		if (!isOutOfCore()) {
+			return;
+		}
+		for (int i = 0; i < getPairs(); i++) {
+			String name = PAIR_FILE_PREFIX + i;
+			new File(_workDir, name + VELOCITY_SUFFIX).delete();
+			new File(_workDir, name + MASS_SUFFIX).delete();
+			_outOfCore.discard(name);
+		}
+	}
+
+	/**
+	 * Off-heap counterpart of calculateMomentum. The momentum is written
+	 * directly to the output instead of being returned.
+	 * 
+	 * @param base
+	 *            radix base B of V and M
+	 * @param velocity
+	 *            velocity of spaceship V
+	 * @param mass
+	 *            relativistic mass of spaceship M
+	 * @param name
+	 *            name of the pair, used to name its files in out-of-core mode
+	 * @throws IOException
+	 *             when the product cannot be written out
+	 */
+	private void writeOffHeapMomentum(int base, OffHeapDigits velocity,
+			OffHeapDigits mass, String name) throws IOException {
+
+		/* Handling exceptional cases */
+		if (velocity.isDigit(0) || mass.isDigit(0)) {
+			showToUser("0");
+		} else if (velocity.isDigit(1)) {
+			mass.echo(_pw);
+		} else if (mass.isDigit(1)) {
+			velocity.echo(_pw);
+		} else if (isOutOfCore()) {
+			try (OffHeapDigits momentum = _outOfCore.multiply(
+					(MappedDigits) velocity, (MappedDigits) mass, base, name)) {
+				momentum.write(_pw);
+			}
+		} else {
+			try (OffHeapDigits momentum = OffHeapDigits.multiply(velocity,
+					mass, base, this)) {
+				momentum.write(_pw);
+			}
+		}
+	}
+
+	/**
+	 * Evaluate each input set to calculate the spaceship's momentum
+	 */
+	private void evaluateInputs() {
+		for (int i = 0; i < getPairs(); i++) {
+			addResult(calculateMomentum(getBase(i), getVelocity(i), getMass(i)));
+		}
+	}
+
+	/**
+	 * Evaluates the input sets within the time allowed for each pair. The
+	 * scheduler admits every pair to an engine or rejects it before any work
+	 * starts, and the pairs are then evaluated on one thread per processor in
+	 * the order the scheduler gives, each being admitted again with the
+	 * corrected estimates just before it starts. Each pair prefers the engine
+	 * the options would choose for it, and is multiplied on the engine it is
+	 * admitted to. Rejected pairs get an empty result, as do pairs whose
+	 * evaluation fails, the failure being reported on the standard error
+	 * stream.
+	 */
+	private void budgetedInputs() {
+		// Engine of each scheduler engine, and the other way round
+		final List<Integer> engines = new ArrayList<Integer>();
+		int[] scheduled = new int[RNS_ENGINE + 1];
+		Arrays.fill(scheduled, BudgetScheduler.REJECTED);
+		scheduled[KARATSUBA_ENGINE] = _scheduler.addEngine(KARATSUBA_NAME,
+				KARATSUBA_EXPONENT, KARATSUBA_RATE);
+		engines.add(KARATSUBA_ENGINE);
+		if (isSharded()) {
+			scheduled[SHARDED_ENGINE] = _scheduler.addEngine(SHARDED_NAME,
+					KARATSUBA_EXPONENT, KARATSUBA_RATE
+							/ _shards.getWorkerCount());
+			engines.add(SHARDED_ENGINE);
+		}
+		if (isNtt()) {
+			scheduled[NTT_ENGINE] = _scheduler.addTransformEngine(NTT_NAME,
+					NTT_RATE);
+			engines.add(NTT_ENGINE);
+		}
+		if (isRns()) {
+			scheduled[RNS_ENGINE] = _scheduler.addEngine(RNS_NAME,
+					RNS_EXPONENT, RNS_RATE);
+			engines.add(RNS_ENGINE);
+		}
+
+		final int[] vLens = new int[getPairs()], mLens = new int[getPairs()];
+		final int[] preferred = new int[getPairs()];
+		long[] excluded = new long[getPairs()];
+		for (int i = 0; i < getPairs(); i++) {
+			vLens[i] = getVelocity(i).length();
+			mLens[i] = getMass(i).length();
+			if (!NttMultiplier.supports(vLens[i], mLens[i], getBase(i))) {
+				excluded[i] |= mask(scheduled[NTT_ENGINE]);
+			}
+			preferred[i] = scheduled[KARATSUBA_ENGINE];
+			for (int engine : new int[] { RNS_ENGINE, NTT_ENGINE }) {
+				if ((mask(scheduled[engine]) & ~excluded[i]) != 0) {
+					preferred[i] = scheduled[engine];
+				}
+			}
+		}
+		_scheduler.plan(vLens, mLens, preferred, excluded);
+		final String[] results = new String[getPairs()];
+
+		int threads = Runtime.getRuntime().availableProcessors();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		for (final int i : _scheduler.order(threads)) {
+			pool.execute(new Runnable() {
+				@Override
+				public void run() {
+					long start = System.nanoTime();
+					int engine = _scheduler.readmit(i, vLens[i], mLens[i],
+							preferred[i]);
+					results[i] = "";
+					try {
+						if (engine != BudgetScheduler.REJECTED) {
+							results[i] = calculateMomentum(getBase(i),
+									getVelocity(i), getMass(i),
+									engines.get(engine));
+						}
+					} catch (Throwable e) {
+						System.err.println(String.format(PAIR_FAILED, i + 1,
+								e));
+					}
+					_scheduler.record(i, System.nanoTime() - start);
+				}
+			});
+		}
+		pool.shutdown();
+		try {
+			pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		for (String result : results) {
+			addResult(result);
+		}
+		_scheduler.report(System.err);
+	}
+
+	/**
+	 * Returns the mask with the bit of a scheduler engine set, or no bit for
+	 * an engine that is not registered.
+	 */
+	private static long mask(int engine) {
+		return engine == BudgetScheduler.REJECTED ? 0 : 1L << engine;
+	}
+
+	/**
+	 * Reads the velocity and mass of each pair as binary frames, and writes
+	 * out the momentum of each pair as a binary frame as soon as it is
+	 * calculated. Frames are read into a buffer in pieces, which grows when a
+	 * frame does not fit into it.
+	 * 
+	 * @throws IOException
+	 *             when the input cannot be read or the output written
+	 * @throws IllegalArgumentException
+	 *             when a frame is malformed, the input ends inside a pair or
+	 *             the frames of a pair differ in radix base
+	 */
+	private void binaryResults() throws IOException, IllegalArgumentException {
+		ReadableByteChannel in = Channels.newChannel(_input);
+		WritableByteChannel out = Channels.newChannel(_output);
+		ByteBuffer buffer = ByteBuffer.allocate(BINARY_BUFFER);
+		buffer.flip();
+		DigitFrame velocity = null;
+		boolean ended = false;
+
+		while (true) {
+			DigitFrame frame = DigitFrame.read(buffer);
+			if (frame == null) {
+				if (ended) {
+					break;
+				}
+				// Making room for the whole of the next frame
+				int needed = DigitFrame.nextFrameSize(buffer);
+				if (needed > buffer.capacity()) {
+					ByteBuffer larger = ByteBuffer.allocate(Math.max(needed,
+							2 * buffer.capacity()));
+					larger.put(buffer);
+					buffer = larger;
+				} else {
+					buffer.compact();
+				}
+				ended = in.read(buffer) < 0;
+				buffer.flip();
+				continue;
+			}
+
+			if (velocity == null) {
+				velocity = frame;
+				continue;
+			}
+			DigitFrame momentum = binaryMomentum(velocity, frame);
+			velocity = null;
+			ByteBuffer output = ByteBuffer.allocate(momentum.getFrameSize());
+			momentum.write(output);
+			output.flip();
+			while (output.hasRemaining()) {
+				out.write(output);
+			}
+		}
+
+		if (buffer.hasRemaining() || velocity != null) {
+			throw new IllegalArgumentException(FRAME_MISMATCH);
+		}
+	}
+
+	/**
+	 * Binary counterpart of calculateMomentum. The digits of the frames are
+	 * multiplied as they are, without any text in between.
+	 * 
+	 * @param velocity
+	 *            velocity of spaceship V
+	 * @param mass
+	 *            relativistic mass of spaceship M, in the same base as V
+	 * @return frame holding the same number as the text calculateMomentum
+	 *         would return
+	 * @throws IllegalArgumentException
+	 *             when the frames differ in radix base
+	 */
+	private DigitFrame binaryMomentum(DigitFrame velocity, DigitFrame mass)
+			throws IllegalArgumentException {
+		int base = velocity.getBase();
+		if (mass.getBase() != base) {
+			throw new IllegalArgumentException(FRAME_MISMATCH);
+		}
+		if (isRecordingStats()) {
+			_stats.begin(base, velocity.getLength(), mass.getLength());
+		}
+		DigitFrame special = binarySpecialCase(velocity, mass);
+		if (special != null) {
+			if (isRecordingStats()) {
+				_stats.setAlgorithm(SPECIAL_NAME);
+				_stats.end();
+			}
+			return special;
+		}
+
+		if (isRecordingStats()) {
+			_stats.lap(PhaseStats.PARSE);
+		}
+		int[] product = multiplyOn(velocity.getDigits(), mass.getDigits(),
+				base, AUTO_ENGINE);
+		if (isRecordingStats()) {
+			_stats.lap(PhaseStats.MULTIPLY);
+		}
+		DigitFrame momentum = productFrame(base, product,
+				velocity.getRadixPos() > 0 || mass.getRadixPos() > 0,
+				velocity.getRadixPos(), mass.getRadixPos());
+		if (isRecordingStats()) {
+			_stats.lap(PhaseStats.FORMAT);
+			_stats.end();
+		}
+		return momentum;
+	}
+
+	/**
+	 * Binary counterpart of specialCase, handling the exceptional cases where
+	 * either V or M is a single digit 0 or 1.
+	 * 
+	 * @param velocity
+	 *            velocity of spaceship V
+	 * @param mass
+	 *            relativistic mass of spaceship M, in the same base as V
+	 * @return the momentum if it is one of the exceptional cases, null
+	 *         otherwise
+	 */
+	private DigitFrame binarySpecialCase(DigitFrame velocity, DigitFrame mass) {
+		int base = velocity.getBase();
+		DigitFrame zero = new DigitFrame(base, 0, new int[] { 1, 0 });
+		// for velocity
+		if (velocity.getLength() == 1 && velocity.getRadixPos() == 0) {
+			if (velocity.getDigits()[1] == 1) {
+				return mass;
+			}
+			if (velocity.getDigits()[1] == 0) {
+				return zero;
+			}
+		}
+
+		// for mass
+		if (mass.getLength() == 1 && mass.getRadixPos() == 0) {
+			if (mass.getDigits()[1] == 1) {
+				return velocity;
+			}
+			if (mass.getDigits()[1] == 0) {
+				return zero;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Evaluates each input set and writes its momentum out immediately, without
+	 * keeping the result. The digits of each product are streamed out by
+	 * StreamingMultiplier as they become final.
+	 * 
+	 * @throws IOException
+	 *             when the streamed product cannot be written out
+	 */
+	private void streamResults() throws IOException {
+		_streamer = new StreamingMultiplier(new DigitMultiplier() {
+			@Override
+			public int[] multiplyDigits(int[] v, int[] m, int base) {
+				return multiplyOn(v, m, base, AUTO_ENGINE);
+			}
+		});
+		for (int i = 0; i < getPairs(); i++) {
+			streamMomentum(getBase(i), getVelocity(i), getMass(i));
+			showToUser("\n");
+		}
 	}
 
 	/**
-	 * Evaluate each input set to calculate the spaceship's momentum
+	 * Streaming counterpart of calculateMomentum. The momentum is written
+	 * directly to the output instead of being returned.
+	 * 
+	 * @param base
+	 *            radix base B of V and M
+	 * @param velocity
+	 *            velocity of spaceship V
+	 * @param mass
+	 *            relativistic mass of spaceship M
+	 * @throws IOException
+	 *             when the streamed product cannot be written out
 	 */
-	private void evaluateInputs() {
-		for (int i = 0; i < getPairs(); i++) {
-			addResult(calculateMomentum(getBase(i), getVelocity(i), getMass(i)));
+	private void streamMomentum(Integer base, String velocity, String mass)
+			throws IOException {
+		String special = specialCase(base, velocity, mass);
+		if (special != null) {
+			showToUser(special);
+			return;
 		}
+
+		int vRadixPos = radixPos(velocity), mRadixPos = radixPos(mass);
+		_streamer.multiply(toIntArray(velocity), toIntArray(mass), base,
+				vRadixPos > 0 || mRadixPos > 0, vRadixPos + mRadixPos, _pw);
 	}
 
 	/**
-	 * Calculation of each result based on each set of radix base B, velocity V,
-	 * and relativistic mass M.
+	 * Handles the exceptional cases where either V or M is a single digit 0 or
+	 * 1, for which no multiplication is required.
 	 * 
 	 * @param base
 	 *            radix base B of V and M
@@ -226,14 +1206,10 @@ public class SpaceshipMomentum {
 	 *            velocity of spaceship V
 	 * @param mass
 	 *            relativistic mass of spaceship M
-	 * @return String representing the spaceship's momentum, given by
-	 *         multiplication of V and M
+	 * @return the momentum if it is one of the exceptional cases, null
+	 *         otherwise
 	 */
-	private String calculateMomentum(Integer base, String velocity, String mass) {
-		char[] V = new char[velocity.length() + 1], M = new char[mass.length() + 1];
-
-		/* Handling exceptional cases */
-
+	private String specialCase(Integer base, String velocity, String mass) {
 		// for velocity
 		if (velocity.length() == 1) {
 			if (Integer.parseInt(velocity, base) == 1) {
@@ -253,17 +1229,73 @@ public class SpaceshipMomentum {
 				return "0";
 			}
 		}
+		return null;
+	}
+
+	/**
+	 * Calculation of each result based on each set of radix base B, velocity V,
+	 * and relativistic mass M.
+	 * 
+	 * @param base
+	 *            radix base B of V and M
+	 * @param velocity
+	 *            velocity of spaceship V
+	 * @param mass
+	 *            relativistic mass of spaceship M
+	 * @return String representing the spaceship's momentum, given by
+	 *         multiplication of V and M
+	 */
+	private String calculateMomentum(Integer base, String velocity, String mass) {
+		return calculateMomentum(base, velocity, mass, AUTO_ENGINE);
+	}
+
+	/**
+	 * Calculation of a result on the given engine.
+	 * 
+	 * @param base
+	 *            radix base B of V and M
+	 * @param velocity
+	 *            velocity of spaceship V
+	 * @param mass
+	 *            relativistic mass of spaceship M
+	 * @param engine
+	 *            KARATSUBA_ENGINE, SHARDED_ENGINE, NTT_ENGINE or RNS_ENGINE, or
+	 *            AUTO_ENGINE to choose one as the options say
+	 * @return String representing the spaceship's momentum, given by
+	 *         multiplication of V and M
+	 */
+	private String calculateMomentum(Integer base, String velocity,
+			String mass, int engine) {
+		char[] V = new char[velocity.length() + 1], M = new char[mass.length() + 1];
+		if (isRecordingStats()) {
+			_stats.begin(base, velocity.length(), mass.length());
+		}
+
+		/* Handling exceptional cases */
+		String special = specialCase(base, velocity, mass);
+		if (special != null) {
+			if (isRecordingStats()) {
+				_stats.setAlgorithm(SPECIAL_NAME);
+				_stats.end();
+			}
+			return special;
+		}
 
 		// Creating reversed character arrays out of the input strings
 		V = new StringBuilder(velocity).reverse().toString().toCharArray();
 		M = new StringBuilder(mass).reverse().toString().toCharArray();
 
 		// Multiplying to obtain result
-		StringBuilder result = new StringBuilder(multiply(V, M, base).trim());
+		StringBuilder result = new StringBuilder(multiply(V, M, base, engine)
+				.trim());
 
 		// reversing to correct order
 		result = result.reverse();
 
+		if (isRecordingStats()) {
+			_stats.lap(PhaseStats.FORMAT);
+			_stats.end();
+		}
 		return result.toString();
 	}
 
@@ -281,10 +1313,12 @@ public class SpaceshipMomentum {
 	 *            second array, should be the spaceship's mass
 	 * @param base
 	 *            the base that the two values, V and M are in
+	 * @param engine
+	 *            engine to multiply on, as for calculateMomentum
 	 * @return a string containing the spaceship's momentum, stored in reverse
 	 *         order
 	 */
-	private String multiply(char[] v, char[] m, int base) {
+	private String multiply(char[] v, char[] m, int base, int engine) {
 
 		// Change array into int
 		int[] velocity = new int[v.length + 1], mass = new int[m.length + 1];
@@ -318,8 +1352,174 @@ public class SpaceshipMomentum {
 		}
 		mass[LEN_POS] = massLen - 1;
 
-		return arrayToString(karatsubaMult(velocity, mass, base), hasRadixPt,
-				vRadixPos, mRadixPos);
+		if (isRecordingStats()) {
+			_stats.lap(PhaseStats.PARSE);
+		}
+		int[] product = multiplyOn(velocity, mass, base, engine);
+		if (isRecordingStats()) {
+			_stats.lap(PhaseStats.MULTIPLY);
+		}
+		return arrayToString(product, hasRadixPt, vRadixPos, mRadixPos);
+	}
+
+	/**
+	 * Multiplies two digit arrays on the given engine, verifying the product
+	 * if verification is enabled.
+	 * 
+	 * @param velocity
+	 *            first number to be multiplied
+	 * @param mass
+	 *            second number to be multiplied
+	 * @param base
+	 *            radix base of the numbers
+	 * @param engine
+	 *            engine to multiply on, as for calculateMomentum
+	 * @return an integer array containing the product, stored in reverse
+	 *         order and having the length stored in the first index
+	 */
+	private int[] multiplyOn(int[] velocity, int[] mass, int base, int engine) {
+		if (engine == AUTO_ENGINE) {
+			engine = chooseEngine(velocity, mass, base);
+		}
+		int[] product;
+		String algorithm;
+		switch (engine) {
+			case SHARDED_ENGINE:
+				product = _shards.multiplyDigits(velocity, mass, base);
+				algorithm = SHARDED_NAME;
+				break;
+			case NTT_ENGINE:
+				product = _ntt.multiplyDigits(velocity, mass, base);
+				algorithm = NTT_NAME;
+				break;
+			case RNS_ENGINE:
+				product = _rns.multiplyDigits(velocity, mass, base);
+				algorithm = RNS_NAME;
+				break;
+			default:
+				product = karatsubaMult(velocity, mass, base);
+				algorithm = KARATSUBA_NAME;
+				break;
+		}
+		if (isVerifying()) {
+			product = verifyProduct(velocity, mass, product, base);
+		}
+		if (isRecordingStats()) {
+			_stats.setAlgorithm(algorithm);
+		}
+		return product;
+	}
+
+	/**
+	 * Chooses the engine to multiply two digit arrays on from the options.
+	 * Products of operands with at least SHARD_THRESHOLD digits are sharded,
+	 * and the others go to the transform the options select if it supports
+	 * them. Every engine gives a product |v| + |m| digits long, less one if
+	 * its top digit is zero, so they agree on products of leading zeroes.
+	 * 
+	 * @param velocity
+	 *            first number to be multiplied
+	 * @param mass
+	 *            second number to be multiplied
+	 * @param base
+	 *            radix base of the numbers
+	 * @return the engine to multiply on
+	 */
+	private int chooseEngine(int[] velocity, int[] mass, int base) {
+		if (isSharded() && velocity[LEN_POS] >= SHARD_THRESHOLD
+				&& mass[LEN_POS] >= SHARD_THRESHOLD) {
+			return SHARDED_ENGINE;
+		}
+		if (isNtt()
+				&& NttMultiplier.supports(velocity[LEN_POS], mass[LEN_POS],
+						base)) {
+			return NTT_ENGINE;
+		}
+		if (isRns()) {
+			return RNS_ENGINE;
+		}
+		return KARATSUBA_ENGINE;
+	}
+
+	/**
+	 * Verifies the product of v and m. If verification fails, the failure is
+	 * reported and, if rerunning is enabled, the product is recomputed with
+	 * the quadratic long multiplication.
+	 * 
+	 * @param v
+	 *            first number that was multiplied
+	 * @param m
+	 *            second number that was multiplied
+	 * @param product
+	 *            product of v and m as computed by karatsubaMult
+	 * @param base
+	 *            radix base of the numbers
+	 * @return the verified product, or the recomputed product if verification
+	 *         failed and rerunning is enabled
+	 */
+	private int[] verifyProduct(int[] v, int[] m, int[] product, int base) {
+		if (_verifier.check(v, m, product, base)) {
+			return product;
+		}
+
+		System.err.println(VERIFY_FAILED + base);
+		if (isRerunning()) {
+			return longMult(v, m, base);
+		}
+		return product;
+	}
+
+	/**
+	 * Converts a number in base-B form into an int array, with each array
+	 * index containing one digit and the length of the number indicated in the
+	 * first index. Digits are stored in reverse order and the radix point, if
+	 * any, is left out.
+	 * 
+	 * @param number
+	 *            the number as given in the input
+	 * @return an int array containing the digits of the number
+	 */
+	private int[] toIntArray(String number) {
+		int[] result = new int[number.length() + 1];
+		int len = 0;
+		for (int i = number.length() - 1; i >= 0; i--) {
+			int temp = charToInt(number.charAt(i));
+			if (isRadixPt(temp)) {
+				continue;
+			}
+			len++;
+			result[len] = temp;
+		}
+		result[LEN_POS] = len;
+		return result;
+	}
+
+	/**
+	 * Finds the position of the radix point in the number, counted from the
+	 * least significant digit. This is the same position multiply obtains from
+	 * the reversed number.
+	 * 
+	 * @param number
+	 *            the number as given in the input
+	 * @return the number of digits after the radix point, 0 if there is no
+	 *         radix point
+	 */
+	private int radixPos(String number) {
+		int index = number.indexOf('.');
+		if (index < 0) {
+			return 0;
+		}
+		return number.length() - 1 - index;
+	}
+
+	/**
+	 * Multiplies two digit arrays with the Karatsuba Multiplication algorithm.
+	 * This allows other stores, such as OffHeapDigits, to use this class as
+	 * their multiplication engine.
+	 */
+	@Override
+	public int[] multiplyDigits(int[] v, int[] m, int base) {
+		return karatsubaMult(v, m, base);
 	}
 
 	/**
@@ -328,6 +1528,14 @@ public class SpaceshipMomentum {
 	 * of the number indicated in the first index. The numbers should also have
 	 * been stored in reverse order.
 	 * 
+	 * The digits are multiplied as plain sequences by karatsubaColumns, and
+	 * the carries of the resulting column sums are resolved in a single pass
+	 * at the end. A column of a product of digits below 36 stays far below
+	 * 2^63 for any number that fits into an array, so the column sums are
+	 * exact. Numbers dominated by zeroes are multiplied run by run as
+	 * SparseDigits instead, which is only decided for the whole numbers, as
+	 * their halves are very likely alike.
+	 * 
 	 * @param v
 	 *            first number to be multiplied
 	 * @param m
@@ -339,68 +1547,108 @@ public class SpaceshipMomentum {
 	 *         Note that the result will be in the same radix base as the inputs
 	 */
 	private int[] karatsubaMult(int[] v, int[] m, int base) {
+		int vLen = v[LEN_POS], mLen = m[LEN_POS];
+
 		// base case
-		if (v[LEN_POS] < CUT_OFF || m[LEN_POS] < CUT_OFF) {
-			return longMult(v, m, base);
+		if (vLen < CUT_OFF || mLen < CUT_OFF) {
+			return deferredMult(v, m, base);
 		}
 
-		// Splitting into halves:
-		int len = Math.max(v[LEN_POS], m[LEN_POS]) / 2;
-		int[] vLow, vHigh, mLow, mHigh;
-
-		if (v[LEN_POS] <= len) {
-
-			vLow = new int[v[LEN_POS] + 1];
-			copyArray(vLow, v, 1, v[LEN_POS] + 1);
-			vHigh = new int[2];
-			vHigh[LEN_POS] = 1;
-
-		} else {
-
-			vLow = new int[len + 1];
-			vHigh = new int[v[LEN_POS] - len + 1];
-			copyArray(vLow, v, 1, len + 1);
-			copyArray(vHigh, v, len + 1, v[LEN_POS] + 1);
-
+		if (isSparse(v, m)) {
+			return new SparseDigits(v).multiply(new SparseDigits(m), base);
 		}
 
-		if (m[LEN_POS] <= len) {
+		long[] columns = karatsubaColumns(toLongs(v), 1, vLen, toLongs(m), 1,
+				mLen, EXACT);
 
-			mLow = new int[m[LEN_POS] + 1];
-			copyArray(mLow, m, 1, m[LEN_POS] + 1);
-			mHigh = new int[2];
-			mHigh[LEN_POS] = 1;
-
-		} else {
+		long start = isRecordingStats() ? System.nanoTime() : 0;
+		int[] result = normalizeColumns(columns, vLen + mLen, base);
+		if (isRecordingStats()) {
+			_stats.add(PhaseStats.RECOMBINE, System.nanoTime() - start);
+		}
+		return result;
+	}
 
-			mLow = new int[len + 1];
-			mHigh = new int[m[LEN_POS] - len + 1];
-			copyArray(mLow, m, 1, len + 1);
-			copyArray(mHigh, m, len + 1, m[LEN_POS] + 1);
+	/**
+	 * Computes the column sums of the product of aLen elements of a from aFrom
+	 * with bLen elements of b from bFrom with the Karatsuba algorithm, without
+	 * resolving any carries. Column k is the sum of a[aFrom + i] * b[bFrom + j]
+	 * over all i + j = k, so the elements need not be digits of any base.
+	 * 
+	 * Without carries, the sums of the halves are simply added element by
+	 * element and Z1-Z2-Z0 is subtracted column by column. A sequence much
+	 * longer than the other is cut into pieces as long as the other one first.
+	 * Only additions, subtractions and multiplications are involved, so the
+	 * exact column sums are correct modulo 2^64, even if intermediate sums
+	 * overflow. With a modulus, all sums are reduced as they go.
+	 * 
+	 * @param a
+	 *            first sequence
+	 * @param aFrom
+	 *            index of the first element of a
+	 * @param aLen
+	 *            number of elements of a, at least 1
+	 * @param b
+	 *            second sequence
+	 * @param bFrom
+	 *            index of the first element of b
+	 * @param bLen
+	 *            number of elements of b, at least 1
+	 * @param modulus
+	 *            modulus of the column sums, below 2^31, with all elements of
+	 *            a and b already reduced, or EXACT
+	 * @return the aLen + bLen - 1 column sums, lowest first
+	 */
+	public static long[] karatsubaColumns(long[] a, int aFrom, int aLen,
+			long[] b, int bFrom, int bLen, long modulus) {
+		// base case
+		if (aLen < CUT_OFF || bLen < CUT_OFF) {
+			return deferredColumns(a, aFrom, aLen, b, bFrom, bLen, modulus);
+		}
+		if (aLen < bLen) {
+			return karatsubaColumns(b, bFrom, bLen, a, aFrom, aLen, modulus);
+		}
 
+		long[] result = new long[aLen + bLen - 1];
+		int half = (aLen + 1) / 2;
+
+		if (bLen <= half) {
+			// Multiplying b with one piece of a at a time
+			for (int from = 0; from < aLen; from += bLen) {
+				int len = Math.min(bLen, aLen - from);
+				long[] piece = karatsubaColumns(a, aFrom + from, len, b, bFrom,
+						bLen, modulus);
+				for (int k = 0; k < piece.length; k++) {
+					result[from + k] = addColumns(result[from + k], piece[k],
+							modulus);
+				}
+			}
+			return result;
 		}
 
-		// Recursive calls:
-		int[] z0, z1, z2;
-		z0 = karatsubaMult(vLow, mLow, base);
-		z2 = karatsubaMult(vHigh, mHigh, base);
-		z1 = karatsubaMult(longAdd(vLow, vHigh, base),
-				longAdd(mLow, mHigh, base), base);
+		// Splitting into halves, both high halves being at most half long
+		int aHigh = aLen - half, bHigh = bLen - half;
+		long[] z0 = karatsubaColumns(a, aFrom, half, b, bFrom, half, modulus);
+		long[] z2 = karatsubaColumns(a, aFrom + half, aHigh, b, bFrom + half,
+				bHigh, modulus);
+		long[] z1 = karatsubaColumns(sumOfHalves(a, aFrom, half, aHigh,
+				modulus), 0, half, sumOfHalves(b, bFrom, half, bHigh, modulus),
+				0, half, modulus);
 
-		// Adding and subtracting
 		// Formula: Z2 * B^(2*R) + (Z1-Z2-Z0)*B^R + Z0
-
-		// Z2 * B^(2*R)
-		int[] z2Shifted = shift(z2, 2 * len);
-
-		// Z2 * B^(2*R) + Z0
-		int[] z3 = longAdd(z2Shifted, z0, base);
-
-		// (Z1-Z2-Z0)*B^R
-		int[] z4 = shift(longSub(z1, longAdd(z2, z0, base), base), len);
-
-		// Adding all together
-		return longAdd(z3, z4, base);
+		System.arraycopy(z0, 0, result, 0, z0.length);
+		System.arraycopy(z2, 0, result, 2 * half, z2.length);
+		for (int k = 0; k < z1.length; k++) {
+			long middle = z1[k] - z0[k] - (k < z2.length ? z2[k] : 0);
+			if (modulus != EXACT) {
+				middle %= modulus;
+				if (middle < 0) {
+					middle += modulus;
+				}
+			}
+			result[half + k] = addColumns(result[half + k], middle, modulus);
+		}
+		return result;
 	}
 
 	/**
@@ -449,6 +1697,8 @@ public class SpaceshipMomentum {
 
 		// variables to perform the multiplication
 		int carry = 0, product = 0;
+		// divides by base with a precomputed reciprocal
+		RadixDivider divider = RadixDivider.forBase(base);
 
 		// To loop through all digits of the velocity
 		for (vIndex = 1; vIndex <= v[LEN_POS]; vIndex++) {
@@ -464,8 +1714,8 @@ public class SpaceshipMomentum {
 
 				// Checking if there's carry
 				if (product >= base) {
-					carry = product / base;
-					product = product % base;
+					carry = divider.quotient(product);
+					product = product - carry * base;
 				}
 
 				// Storing into result array
@@ -492,162 +1742,165 @@ public class SpaceshipMomentum {
 	}
 
 	/**
-	 * Method performs long addition on two numbers. Method takes in two
-	 * integer arrays, with each array index containing one digit and the length
-	 * of the number indicated in the first index. The numbers should also have
-	 * been stored in reverse order.
+	 * Variant of longMult that defers all carries. The column sums are
+	 * accumulated in long by deferredColumns without normalizing, so the inner
+	 * loop is a plain multiply-add without a dependency between consecutive
+	 * digits. A column receives at most min(|v|,|m|) products of at most
+	 * 35*35, which cannot overflow a long, so the carries are normalized in a
+	 * single pass at the end.
 	 * 
-	 * @param first
-	 *            first number to be added
-	 * @param second
-	 *            second number to be added
+	 * @param v
+	 *            first number to be multiplied
+	 * @param m
+	 *            second number to be multiplied
 	 * @param base
-	 *            radix base of input
-	 * @return an integer array containing the sum of first and second, stored
-	 *         in
+	 *            radix base of the numbers
+	 * @return an integer array containing the product of v and m, stored in
 	 *         reverse order and having the length stored in the first index.
 	 *         Note that the result will be in the same radix base as the inputs
 	 */
-	private int[] longAdd(int[] first, int[] second, int base) {
-		int len = Math.max(first[LEN_POS], second[LEN_POS]) + 1;
-		int shorter = Math.min(first[LEN_POS], second[LEN_POS]);
-		int[] result = new int[len + 1];
-		int carry = 0, sum = 0, index = 0;
-
-		for (index = 1; index <= shorter; index++) {
+	private int[] deferredMult(int[] v, int[] m, int base) {
+		int vLen = v[LEN_POS], mLen = m[LEN_POS];
 
-			sum = first[index] + second[index] + carry;
-			carry = 0;
+		/* Handling exceptional cases the same way as longMult */
 
-			if (sum >= base) {
-				carry = sum / base;
-				sum = sum % base;
-			}
-
-			result[index] = sum;
+		if (vLen == 1 && (v[1] == 0 || v[1] == 1) || mLen == 1
+				&& (m[1] == 0 || m[1] == 1)) {
+			return longMult(v, m, base);
 		}
 
-		if (first[LEN_POS] > second[LEN_POS]) {
-			for (index = shorter + 1; index <= first[LEN_POS]; index++) {
-				sum = first[index] + carry;
-				carry = 0;
+		long[] columns = deferredColumns(toLongs(v), 1, vLen, toLongs(m), 1,
+				mLen, EXACT);
+		return normalizeColumns(columns, vLen + mLen, base);
+	}
 
-				if (sum >= base) {
-					carry = sum / base;
-					sum = sum % base;
-				}
+	/**
+	 * Computes the column sums of a product the way longMult multiplies,
+	 * adding every product of two elements into its column. Modular sums are
+	 * only reduced once they reach REDUCE_LIMIT.
+	 * 
+	 * @return the aLen + bLen - 1 column sums, lowest first
+	 * @see #karatsubaColumns(long[], int, int, long[], int, int, long)
+	 */
+	private static long[] deferredColumns(long[] a, int aFrom, int aLen,
+			long[] b, int bFrom, int bLen, long modulus) {
+		long[] result = new long[aLen + bLen - 1];
 
-				result[index] = sum;
+		for (int i = 0; i < aLen; i++) {
+			long element = a[aFrom + i];
+			if (element == 0) {
+				continue;
 			}
-		} else if (second[LEN_POS] > first[LEN_POS]) {
-			for (index = shorter + 1; index <= second[LEN_POS]; index++) {
-				sum = second[index] + carry;
-				carry = 0;
-
-				if (sum >= base) {
-					carry = sum / base;
-					sum = sum % base;
+			if (modulus == EXACT) {
+				for (int j = 0; j < bLen; j++) {
+					result[i + j] += element * b[bFrom + j];
+				}
+			} else {
+				for (int j = 0; j < bLen; j++) {
+					long sum = result[i + j] + element * b[bFrom + j];
+					result[i + j] = sum < REDUCE_LIMIT ? sum : sum % modulus;
 				}
-
-				result[index] = sum;
 			}
 		}
 
-		// for most significant carry to be included
-		if (carry != 0) {
-			result[index] = carry;
-			index++;
+		if (modulus != EXACT) {
+			for (int k = 0; k < result.length; k++) {
+				result[k] %= modulus;
+			}
 		}
-
-		result[LEN_POS] = index - 1;
-
 		return result;
 	}
 
 	/**
-	 * Subtracts the second array from the first array. The int array must
-	 * contain numbers stored in reversed order. i.e. "100" is stored as
-	 * [0,0,1].
+	 * Adds the high half of a sequence onto its low half.
 	 * 
-	 * @param first
-	 *            contains the minuend (the number to be subtracted from)
-	 * @param second
-	 *            contains the subtrahend (the number to be subtracted)
-	 * @param base
-	 *            the radix base of the two numbers
-	 * @return an int array containing the difference, stored in reverse
+	 * @return a new array of the half elements of the sum
 	 */
-	private int[] longSub(int[] first, int[] second, int base) {
-		int len = Math.max(first[LEN_POS], second[LEN_POS]);
-		int shorter = Math.min(first[LEN_POS], second[LEN_POS]);
-		int[] result = new int[len + 1];
-		int carry = 0, difference = 0, index = 0;
-
-		for (index = 1; index <= shorter; index++) {
-
-			difference = first[index] - second[index] - carry;
-			carry = 0;
-
-			if (difference < 0) {
-				carry = 1;
-				difference = base + difference;
-			}
-
-			result[index] = difference;
+	private static long[] sumOfHalves(long[] a, int from, int half, int high,
+			long modulus) {
+		long[] sum = new long[half];
+		System.arraycopy(a, from, sum, 0, half);
+		for (int k = 0; k < high; k++) {
+			sum[k] = addColumns(sum[k], a[from + half + k], modulus);
 		}
+		return sum;
+	}
 
-		if (first[LEN_POS] > second[LEN_POS]) {
-			for (index = shorter + 1; index <= first[LEN_POS]; index++) {
-				difference = first[index] - carry;
-				carry = 0;
-
-				if (difference < 0) {
-					carry = 1;
-					difference = base + difference;
-				}
-				result[index] = difference;
-			}
-
-		} else if (second[LEN_POS] > first[LEN_POS]) {
-			for (index = shorter + 1; index <= second[LEN_POS]; index++) {
-				difference = second[index] - carry;
-				carry = 0;
-
-				if (difference < 0) {
-					carry = 1;
-					difference = base + difference;
-				}
-				result[index] = difference;
-			}
+	/**
+	 * Adds two column sums, reducing the sum if both are residues.
+	 */
+	private static long addColumns(long x, long y, long modulus) {
+		long sum = x + y;
+		if (modulus != EXACT && sum >= modulus) {
+			sum -= modulus;
 		}
+		return sum;
+	}
 
-		// Remove leading zeroes
-		index--;
-		while (result[index] == 0 && index > 1) {
-			index--;
+	/**
+	 * Copies the digits of a number into longs, keeping their indexes.
+	 */
+	private static long[] toLongs(int[] number) {
+		long[] result = new long[number[LEN_POS] + 1];
+		for (int index = 1; index < result.length; index++) {
+			result[index] = number[index];
 		}
-		result[LEN_POS] = index;
 		return result;
 	}
 
 	/**
-	 * Method shifts the content of the array to the right by an offset value
+	 * Decides whether multiplying v and m run by run is cheaper than
+	 * continuing with Karatsuba. The product of the stored digits in
+	 * SparseDigits is compared with SPARSE_ADVANTAGE times the units of
+	 * Karatsuba's work.
 	 * 
-	 * @param arr
-	 *            the original array
-	 * @param offset
-	 *            the amount to offset by
-	 * @return a new array containing the necessary shifts to the original array
+	 * @param v
+	 *            first number to be multiplied
+	 * @param m
+	 *            second number to be multiplied
+	 * @return true if the numbers should be multiplied as SparseDigits
 	 */
-	private int[] shift(int[] arr, int offset) {
-		int[] result = new int[arr[LEN_POS] + 1 + offset];
-		for (int i = 1; i <= offset; i++) {
-			result[i] = 0;
-		}
-		for (int i = 1; i <= arr[LEN_POS]; i++) {
-			result[i + offset] = arr[i];
+	private boolean isSparse(int[] v, int[] m) {
+		double shorter = Math.min(v[LEN_POS], m[LEN_POS]);
+		double longer = Math.max(v[LEN_POS], m[LEN_POS]);
+		double limit = SPARSE_ADVANTAGE * longer / shorter
+				* Math.pow(shorter, KARATSUBA_EXPONENT);
+
+		// Counting stops as soon as the product cannot be below the limit
+		int vStored = SparseDigits.storedDigits(v, (int) Math.min(limit,
+				Integer.MAX_VALUE));
+		int mStored = SparseDigits.storedDigits(m, (int) (limit / vStored));
+		return (double) vStored * mStored < limit;
+	}
+
+	/**
+	 * Propagates the carries through the column sums of a product.
+	 * 
+	 * @param columns
+	 *            column sums, lowest first, with column i holding the sum of
+	 *            all digit products contributing to digit i + 1
+	 * @param maxLen
+	 *            the maximum length of the product, |v| + |m|
+	 * @param base
+	 *            radix base of the numbers
+	 * @return an integer array containing the product, stored in reverse order
+	 *         and having the length stored in the first index
+	 */
+	private int[] normalizeColumns(long[] columns, int maxLen, int base) {
+		// CarryPropagator writes each digit at the index of its column
+		long[] indexed = new long[maxLen + 1];
+		System.arraycopy(columns, 0, indexed, 1, Math.min(columns.length,
+				maxLen));
+		int[] result = new int[maxLen + 1];
+		CarryPropagator.normalize(indexed, result, 1, maxLen + 1, base);
+
+		// Length includes the last digit only if there was a final carry
+		if (result[maxLen] != 0) {
+			result[LEN_POS] = maxLen;
+		} else {
+			result[LEN_POS] = maxLen - 1;
 		}
-		result[LEN_POS] = arr[LEN_POS] + offset;
+
 		return result;
 	}
 
@@ -710,6 +1963,56 @@ public class SpaceshipMomentum {
 		return result.substring(trailing, leading + 1);
 	}
 
+	/**
+	 * Binary counterpart of arrayToString. The frame holds exactly the digits
+	 * and radix point arrayToString would write, after the same removal of
+	 * zeroes and of a meaningless radix point.
+	 * 
+	 * @param base
+	 *            radix base of the number
+	 * @param array
+	 *            the number, stored in reverse order with its length in the
+	 *            first index
+	 * @param hasRadixPt
+	 *            Boolean variable to indicate if there is a radix point to be
+	 *            inserted
+	 * @param vRadixPos
+	 *            The position of the radix point in the velocity
+	 * @param mRadixPos
+	 *            The position of the radix point in the mass
+	 * @return a frame holding the number as arrayToString would write it
+	 */
+	private DigitFrame productFrame(int base, int[] array, boolean hasRadixPt,
+			int vRadixPos, int mRadixPos) {
+		int len = array[LEN_POS], radixPos = vRadixPos + mRadixPos;
+		// arrayToString writes the radix point in front of digit radixPos
+		boolean hasPoint = hasRadixPt && radixPos >= 1 && radixPos <= len;
+		int low = 1, high = len;
+
+		// Removing trailing zeroes, which stops at the radix point
+		if (hasRadixPt) {
+			while (low <= len && array[low] == 0
+					&& (!hasPoint || low < radixPos)) {
+				low++;
+			}
+		}
+		// Removing leading zeroes, keeping the one in front of the point
+		while (high >= low && array[high] == 0
+				&& !(hasPoint && high == radixPos)) {
+			high--;
+		}
+		if (high < low) {
+			return new DigitFrame(base, 0, new int[] { 1, 0 });
+		}
+
+		int[] digits = new int[high - low + 2];
+		digits[LEN_POS] = high - low + 1;
+		System.arraycopy(array, low, digits, 1, high - low + 1);
+		// The point is meaningless if no digit is left after it
+		int fraction = hasPoint && low < radixPos ? radixPos - low : 0;
+		return new DigitFrame(base, fraction, digits);
+	}
+
 	/**
 	 * Checks if the value represents a radix point. This is decided if the
 	 * value is equals to the ASCII value of the character '.', which is -2.
@@ -775,34 +2078,95 @@ public class SpaceshipMomentum {
 	}
 
 	/**
-	 * Copies the content of the original array to the destination array. Will
-	 * copy all content in the range of [from,to)
-	 * 
-	 * @param destination
-	 *            array to be copied into
-	 * @param original
-	 *            array to copy from
-	 * @param from
-	 *            index to start copying from
-	 * @param to
-	 *            index to stop copying from (exclusive)
+	 * Creates a number of the given length with random digits in
+	 * BENCHMARK_BASE, its most significant digit being nonzero.
+	 */
+	private int[] randomNumber(int length, Random random) {
+		int[] number = new int[length + 1];
+		number[LEN_POS] = length;
+		for (int i = 1; i <= length; i++) {
+			number[i] = random.nextInt(BENCHMARK_BASE);
+		}
+		number[length] = 1 + random.nextInt(BENCHMARK_BASE - 1);
+		return number;
+	}
+
+	/**
+	 * Creates an operand for the training run: a number of the given length
+	 * in the given base without leading zeroes, with a radix point before a
+	 * random digit in half of the cases.
 	 */
-	private void copyArray(int[] destination, int[] original, int from, int to) {
-		int destLen = 1;
-		for (int i = from; i < to; i++) {
-			destination[destLen] = original[i];
-			destLen++;
+	private String randomOperand(int length, int base, Random random) {
+		StringBuilder operand = new StringBuilder(length + 1);
+		operand.append(intToChar(1 + random.nextInt(base - 1)));
+		for (int i = 1; i < length; i++) {
+			operand.append(intToChar(random.nextInt(base)));
 		}
-		destLen--;
-		while (destLen > 1 && destination[destLen] == 0) {
-			destLen--;
+		if (length > 1 && random.nextBoolean()) {
+			operand.insert(1 + random.nextInt(length - 1), '.');
+		}
+		return operand.toString();
+	}
+
+	/**
+	 * Runs the program on the given streams, as main does on the standard
+	 * ones. BatchServer calls this for each of its jobs, so nothing in here
+	 * may exit the JVM.
+	 * 
+	 * @param input
+	 *            stream to read the pairs from
+	 * @param output
+	 *            stream to write the momentums to
+	 * @param args
+	 *            command line options
+	 * @return the exit status of the program
+	 * @throws IOException
+	 *             when the shard workers cannot be started
+	 */
+	public static int run(InputStream input, PrintStream output, String[] args)
+			throws IOException {
+		SpaceshipMomentum momentumCalc = new SpaceshipMomentum(input, output);
+		for (String arg : args) {
+			if (arg.equals(STREAM_OPTION)) {
+				momentumCalc.setStreaming(true);
+			} else if (arg.equals(VERIFY_OPTION)) {
+				momentumCalc.setVerifying(true);
+			} else if (arg.equals(RERUN_OPTION)) {
+				momentumCalc.setRerunning(true);
+			} else if (arg.equals(PIPELINE_OPTION)) {
+				momentumCalc.setPipelined(true);
+			} else if (arg.equals(OFF_HEAP_OPTION)) {
+				momentumCalc.setOffHeap(true);
+			} else if (arg.startsWith(OUT_OF_CORE_OPTION)) {
+				momentumCalc.setOutOfCore(new File(arg
+						.substring(OUT_OF_CORE_OPTION.length())));
+			} else if (arg.startsWith(SHARDS_OPTION)) {
+				momentumCalc.setShards(Integer.parseInt(arg
+						.substring(SHARDS_OPTION.length())));
+			} else if (arg.equals(NTT_OPTION)) {
+				momentumCalc.setNtt(true);
+			} else if (arg.equals(RNS_OPTION)) {
+				momentumCalc.setRns(true);
+			} else if (arg.startsWith(BUDGET_OPTION)) {
+				momentumCalc.setBudget(Long.parseLong(arg
+						.substring(BUDGET_OPTION.length())));
+			} else if (arg.equals(STATS_OPTION)) {
+				momentumCalc.setRecordingStats(true);
+			} else if (arg.equals(BINARY_OPTION)) {
+				momentumCalc.setBinary(true);
+			} else if (arg.equals(BENCHMARK_OPTION)) {
+				momentumCalc.benchmark();
+				return 0;
+			} else if (arg.equals(TRAIN_OPTION)) {
+				momentumCalc.train();
+				return 0;
+			}
 		}
-		destination[LEN_POS] = destLen;
+		return momentumCalc.run();
 	}
 
-	public static void main(String[] args) {
-		SpaceshipMomentum momentumCalc = new SpaceshipMomentum();
-		momentumCalc.run();
+	public static void main(String[] args) throws IOException {
+		System.exit(run(System.in, System.out, args));
 	}
 
 }
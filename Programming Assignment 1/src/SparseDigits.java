@@ -0,0 +1,168 @@
+/**
+ * This class stores a number dominated by zero digits as a list of runs, each
+ * run being the position of its lowest digit followed by its digits. A run ends
+ * where more than GAP zero digits follow, so short gaps stay inside a run and a
+ * dense number is a single run, while long runs of zeroes are not stored at
+ * all.
+ *
+ * Products are computed run by run, so multiplying costs time proportional to
+ * the product of the stored digit counts rather than of the lengths. Apart from
+ * allocating and normalizing the result, a sparse number times a dense number
+ * costs the stored digits of the sparse one times the length of the dense one,
+ * and two sparse numbers cost the product of their stored digits.
+ *
+ * @author Victor Hazali
+ */
+public class SparseDigits {
+
+	/** Constant variables **/
+	// Index in int array storing length of number
+	private static final int	LEN_POS	= 0;
+	// Longest run of zeroes kept inside a run
+	private static final int	GAP		= 8;
+
+	/** Member Variables **/
+	private int					_length;
+	private int					_runCount;
+	// Position of the lowest digit of each run, 0 being the least significant
+	private int[]				_positions;
+	// Index in _digits of the lowest digit of each run, plus one end marker
+	private int[]				_offsets;
+	private int[]				_digits;
+
+	/* Constructor */
+
+	/**
+	 * Collects the runs of a number.
+	 *
+	 * @param number
+	 *            the number, stored in reverse order with its length in the
+	 *            first index
+	 */
+	public SparseDigits(int[] number) {
+		_length = number[LEN_POS];
+		_runCount = 0;
+		int stored = storedDigits(number, Integer.MAX_VALUE);
+		_digits = new int[stored];
+		_positions = new int[stored + 1];
+		_offsets = new int[stored + 2];
+
+		int next = 0, last = -GAP - 2;
+		for (int i = 0; i < _length; i++) {
+			int digit = number[i + 1];
+			if (digit == 0) {
+				continue;
+			}
+			if (i - last > GAP + 1) {
+				// Starting a new run
+				_positions[_runCount] = i;
+				_offsets[_runCount] = next;
+				_runCount++;
+			} else {
+				// Keeping the short gap inside the current run
+				next += i - last - 1;
+			}
+			_digits[next] = digit;
+			next++;
+			last = i;
+		}
+		_offsets[_runCount] = next;
+	}
+
+	/* Accessors */
+
+	public int getLength() {
+		return _length;
+	}
+
+	public int getRunCount() {
+		return _runCount;
+	}
+
+	public int getStoredDigits() {
+		return _offsets[_runCount];
+	}
+
+	/* Public Methods */
+
+	/**
+	 * Counts the digits a number would store as runs, without building them.
+	 *
+	 * @param number
+	 *            the number, stored in reverse order with its length in the
+	 *            first index
+	 * @param limit
+	 *            count at which to stop counting
+	 * @return the number of digits inside runs, or a number above limit if
+	 *         there are more than limit
+	 */
+	public static int storedDigits(int[] number, int limit) {
+		int stored = 0, last = -GAP - 2;
+		for (int i = 0; i < number[LEN_POS] && stored <= limit; i++) {
+			if (number[i + 1] == 0) {
+				continue;
+			}
+			stored += i - last > GAP + 1 ? 1 : i - last;
+			last = i;
+		}
+		return stored;
+	}
+
+	/**
+	 * Multiplies this number by another one, run by run.
+	 *
+	 * @param other
+	 *            the number to multiply by
+	 * @param base
+	 *            radix base of the numbers
+	 * @return an integer array containing the product, stored in reverse order
+	 *         and having the length stored in the first index. The length
+	 *         includes the top digit only if it is not zero
+	 */
+	public int[] multiply(SparseDigits other, int base) {
+		int maxLen = getLength() + other.getLength();
+		long[] columns = new long[maxLen + 1];
+
+		for (int run = 0; run < _runCount; run++) {
+			for (int otherRun = 0; otherRun < other._runCount; otherRun++) {
+				multiplyRuns(run, other, otherRun, columns);
+			}
+		}
+
+		// Normalizing all columns at once
+		int[] result = new int[maxLen + 1];
+		CarryPropagator.normalize(columns, result, 1, maxLen + 1, base);
+		if (result[maxLen] != 0) {
+			result[LEN_POS] = maxLen;
+		} else {
+			result[LEN_POS] = maxLen - 1;
+		}
+		return result;
+	}
+
+	/* Private Methods */
+
+	/**
+	 * Adds the product of one run of this number and one run of the other into
+	 * the column sums.
+	 */
+	private void multiplyRuns(int run, SparseDigits other, int otherRun,
+			long[] columns) {
+		int from = _offsets[run], to = _offsets[run + 1];
+		int otherFrom = other._offsets[otherRun];
+		int otherTo = other._offsets[otherRun + 1];
+		// Column of the product of the lowest digits of both runs
+		int column = _positions[run] + other._positions[otherRun] + 1;
+
+		for (int i = from; i < to; i++, column++) {
+			long digit = _digits[i];
+			if (digit == 0) {
+				continue;
+			}
+			int index = column;
+			for (int j = otherFrom; j < otherTo; j++, index++) {
+				columns[index] += digit * other._digits[j];
+			}
+		}
+	}
+}
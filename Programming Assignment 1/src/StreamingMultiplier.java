@@ -0,0 +1,318 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * This class multiplies two numbers while streaming the digits of the product
+ * out as soon as they become final. The longer number is cut into blocks, from
+ * the least significant digit upwards, each at least as long as the shorter
+ * number, and each block is multiplied by the shorter number on a
+ * DigitMultiplier engine such as Karatsuba or the number theoretic transform.
+ * The block products are added into a window of digits. Once block k has been
+ * added, no later block product reaches down to its digits, so they are final
+ * and emitted, and the window moves up past them.
+ *
+ * Apart from the output, memory is proportional to the shorter number and one
+ * block, and the total work is that of one balanced product per block, so a
+ * product of a huge number by a short one takes time linear in the huge one.
+ * Adding a block product into the window needs no division, as both are
+ * normalized already.
+ *
+ * Since the output has to be written most significant digit first, the
+ * produced digits are collected into fixed size blocks and spilled to a
+ * temporary file. The blocks are then read back in reverse order. Products
+ * that fit into a single block never touch the disk.
+ *
+ * Input numbers use the same layout as SpaceshipMomentum: one digit per array
+ * index, stored in reverse order, with the length of the number stored in the
+ * first index. The formatting of the radix point and the removal of
+ * unnecessary zeroes follow SpaceshipMomentum.arrayToString.
+ *
+ * @author Victor Hazali
+ */
+public class StreamingMultiplier {
+
+	/** Constant variables **/
+	// Index in int array storing length of number
+	private static final int	LEN_POS				= 0;
+	// Number of characters in a spilled block
+	private static final int	BLOCK_SIZE			= 1 << 16;
+	// Shortest block of the longer number multiplied at a time
+	private static final int	MIN_OPERAND_BLOCK	= 1 << 12;
+	private static final String	SPILL_PREFIX		= "momentum";
+	private static final String	SPILL_SUFFIX		= ".spill";
+
+	/** Member Variables **/
+	private DigitMultiplier		_engine;
+	private byte[]				_block;
+	private int					_blockLen;
+	private int					_blockCnt;
+	private File				_spillFile;
+	private OutputStream		_spill;
+	private boolean				_stripping;
+
+	/* Constructor */
+
+	/**
+	 * Creates a multiplier computing its block products on an engine.
+	 *
+	 * @param engine
+	 *            engine multiplying each block of the longer number by the
+	 *            shorter number
+	 */
+	public StreamingMultiplier(DigitMultiplier engine) {
+		_engine = engine;
+		_block = new byte[BLOCK_SIZE];
+	}
+
+	/* Public Methods */
+
+	/**
+	 * Multiplies v and m and writes the product to the writer, most
+	 * significant digit first. Nothing else (such as a newline) is written.
+	 *
+	 * @param v
+	 *            first number to be multiplied
+	 * @param m
+	 *            second number to be multiplied
+	 * @param base
+	 *            radix base of the numbers
+	 * @param hasRadixPt
+	 *            true if either of the numbers contained a radix point
+	 * @param radixPos
+	 *            the sum of the radix point positions of v and m
+	 * @param out
+	 *            the writer to write the product to
+	 * @throws IOException
+	 *             when the spill file cannot be written or read
+	 */
+	public void multiply(int[] v, int[] m, int base, boolean hasRadixPt,
+			int radixPos, Writer out) throws IOException {
+		reset(hasRadixPt);
+		try {
+			int[] longer = v[LEN_POS] >= m[LEN_POS] ? v : m;
+			int[] shorter = longer == v ? m : v;
+			int longLen = longer[LEN_POS];
+			// The product has up to this many digits, the last one only if
+			// it is not zero
+			int maxLen = v[LEN_POS] + m[LEN_POS];
+			int blockLen = Math.max(shorter[LEN_POS], MIN_OPERAND_BLOCK);
+			// Digits from the current position upwards, not yet emitted
+			int[] window = new int[blockLen + shorter[LEN_POS] + 1];
+			shorter = trimmed(shorter, 1, shorter[LEN_POS]);
+			int position = 1;
+
+			for (int from = 1; from <= longLen; from += blockLen) {
+				int len = Math.min(blockLen, longLen - from + 1);
+				int[] block = trimmed(longer, from, len);
+				if (block != null && shorter != null) {
+					addProduct(window,
+							_engine.multiplyDigits(block, shorter, base), base);
+				}
+
+				// The digits of this block can no longer change
+				for (int i = 0; i < len; i++) {
+					emit(window[i], position++, radixPos);
+				}
+				System.arraycopy(window, len, window, 0, window.length - len);
+				Arrays.fill(window, window.length - len, window.length, 0);
+			}
+
+			for (int i = 0; position < maxLen
+					|| position == maxLen && window[i] != 0; i++) {
+				emit(window[i], position++, radixPos);
+			}
+
+			drain(out);
+		} finally {
+			release();
+		}
+	}
+
+	/* Private Methods */
+
+	/**
+	 * Copies len digits of a number from the given index, leaving out their
+	 * leading zeroes.
+	 *
+	 * @return the digits, stored in reverse order with their length in the
+	 *         first index, or null if they are all zero
+	 */
+	private int[] trimmed(int[] number, int from, int len) {
+		while (len > 0 && number[from + len - 1] == 0) {
+			len--;
+		}
+		if (len == 0) {
+			return null;
+		}
+		int[] digits = new int[len + 1];
+		digits[LEN_POS] = len;
+		System.arraycopy(number, from, digits, 1, len);
+		return digits;
+	}
+
+	/**
+	 * Adds a product into the window of digits not yet emitted, the lowest
+	 * digit of the product going to the lowest digit of the window.
+	 */
+	private void addProduct(int[] window, int[] product, int base) {
+		int carry = 0, index = 0;
+		for (; index < product[LEN_POS]; index++) {
+			int sum = window[index] + product[index + 1] + carry;
+			carry = sum >= base ? 1 : 0;
+			window[index] = sum - carry * base;
+		}
+		for (; carry != 0; index++) {
+			int sum = window[index] + carry;
+			carry = sum >= base ? 1 : 0;
+			window[index] = sum - carry * base;
+		}
+	}
+
+	/**
+	 * Prepares the spilling state for a new product.
+	 *
+	 * @param hasRadixPt
+	 *            whether trailing zeroes of the fraction are to be removed
+	 */
+	private void reset(boolean hasRadixPt) {
+		_blockLen = 0;
+		_blockCnt = 0;
+		_spillFile = null;
+		_spill = null;
+		_stripping = hasRadixPt;
+	}
+
+	/**
+	 * Emits the digit at the given position (1 for the least significant
+	 * digit), inserting the radix point in front of it if required. Trailing
+	 * zeroes of the fraction and a trailing radix point are dropped here, as
+	 * they are the first characters to be produced.
+	 */
+	private void emit(int digit, int position, int radixPos)
+			throws IOException {
+		if (position == radixPos) {
+			if (_stripping) {
+				// Radix point with nothing after it is meaningless
+				_stripping = false;
+			} else {
+				append('.');
+			}
+		}
+		if (_stripping) {
+			if (digit == 0) {
+				return;
+			}
+			_stripping = false;
+		}
+		append(intToChar(digit));
+	}
+
+	/**
+	 * Appends a character to the current block, spilling the block to the
+	 * temporary file when it is full.
+	 */
+	private void append(char c) throws IOException {
+		if (_blockLen == BLOCK_SIZE) {
+			spill();
+		}
+		_block[_blockLen] = (byte) c;
+		_blockLen++;
+	}
+
+	/**
+	 * Writes the current block to the spill file.
+	 */
+	private void spill() throws IOException {
+		if (_spill == null) {
+			_spillFile = File.createTempFile(SPILL_PREFIX, SPILL_SUFFIX);
+			_spillFile.deleteOnExit();
+			_spill = new FileOutputStream(_spillFile);
+		}
+		_spill.write(_block, 0, _blockLen);
+		_blockCnt++;
+		_blockLen = 0;
+	}
+
+	/**
+	 * Writes all produced characters to the writer, most significant first.
+	 * Leading zeroes are removed unless they directly precede the radix point.
+	 */
+	private void drain(Writer out) throws IOException {
+		RandomAccessFile reader = null;
+		char pending = 0;
+		boolean leading = true;
+
+		if (_spill != null) {
+			_spill.close();
+			_spill = null;
+			reader = new RandomAccessFile(_spillFile, "r");
+		}
+
+		try {
+			int block = _blockCnt;
+			int len = _blockLen;
+			while (true) {
+				for (int i = len - 1; i >= 0; i--) {
+					char c = (char) _block[i];
+					if (leading) {
+						if (pending == 0 || (pending == '0' && c != '.')) {
+							pending = c;
+							continue;
+						}
+						out.write(pending);
+						leading = false;
+					}
+					out.write(c);
+				}
+				if (block == 0) {
+					break;
+				}
+				block--;
+				reader.seek((long) block * BLOCK_SIZE);
+				reader.readFully(_block, 0, BLOCK_SIZE);
+				len = BLOCK_SIZE;
+			}
+			if (leading && pending != 0 && pending != '0') {
+				out.write(pending);
+			}
+		} finally {
+			if (reader != null) {
+				reader.close();
+			}
+		}
+	}
+
+	/**
+	 * Closes and deletes the spill file, if any.
+	 */
+	private void release() throws IOException {
+		if (_spill != null) {
+			_spill.close();
+			_spill = null;
+		}
+		if (_spillFile != null) {
+			_spillFile.delete();
+			_spillFile = null;
+		}
+	}
+
+	/**
+	 * Takes in a digit and converts it into a character based on radix system.
+	 * i.e. int 10 will return char A, 11 returns B etc.
+	 *
+	 * @param digit
+	 *            int to convert
+	 * @return Equivalent char value
+	 */
+	private char intToChar(int digit) {
+		if (digit <= 9) {
+			return (char) (digit + '0');
+		}
+		return (char) (digit - 10 + 'A');
+	}
+}
@@ -0,0 +1,76 @@
+/**
+ * This interface specifies how the edges of an undirected graph are stored.
+ * Vertices are identified by their index, from 0 to one less than the number
+ * of vertices. Any number of edges may join a pair of vertices, so a count is
+ * kept for every pair, and an edge from a vertex to itself counts twice.
+ *
+ * @author Victor Hazali
+ */
+public interface Adjacency {
+
+	/**
+	 * @return the number of vertices the edges can join
+	 */
+	public int getVertexCount();
+
+	/**
+	 * Adds one edge between a pair of vertices.
+	 *
+	 * @param vertex1
+	 *            index of first vertex
+	 * @param vertex2
+	 *            index of second vertex
+	 */
+	public void addEdge(int vertex1, int vertex2);
+
+	/**
+	 * Removes one edge between a pair of vertices.
+	 *
+	 * @param vertex1
+	 *            index of first vertex
+	 * @param vertex2
+	 *            index of second vertex
+	 */
+	public void removeEdge(int vertex1, int vertex2);
+
+	/**
+	 * Checks if at least one edge joins a pair of vertices.
+	 *
+	 * @param vertex1
+	 *            index of first vertex
+	 * @param vertex2
+	 *            index of second vertex
+	 * @return true if there is an edge between the two vertices
+	 */
+	public boolean hasEdge(int vertex1, int vertex2);
+
+	/**
+	 * Counts the edges between a pair of vertices.
+	 *
+	 * @param vertex1
+	 *            index of first vertex
+	 * @param vertex2
+	 *            index of second vertex
+	 * @return the number of edges between the two vertices
+	 */
+	public int countEdges(int vertex1, int vertex2);
+
+	/**
+	 * Counts the vertices joined to a vertex by at least one edge.
+	 *
+	 * @param vertex
+	 *            index of the vertex
+	 * @return the number of neighbours
+	 */
+	public int getDegree(int vertex);
+
+	/**
+	 * Lists the vertices joined to a vertex by at least one edge.
+	 *
+	 * @param vertex
+	 *            index of the vertex
+	 * @return a new array of the indices of the neighbours, in increasing
+	 *         order
+	 */
+	public int[] getNeighbours(int vertex);
+}
@@ -0,0 +1,242 @@
+import java.util.Arrays;
+
+/**
+ * This class stores the edges of a graph as an adjacency matrix of bits: bit
+ * v of row u is set if at least one edge joins u and v. Each row is a long
+ * array of ceil(V/64) words, so the matrix takes V^2/8 bytes, a 32nd of a
+ * matrix of int counts, and degrees and neighbours are read a word at a time.
+ *
+ * A pair joined by more than one edge also has an entry in a side table
+ * holding the number of edges beyond the first. Such pairs are rare, so the
+ * table is small and lookups only reach it for the counts of pairs whose bit
+ * is set while the table is not empty. The table is an open addressing hash
+ * table with linear probing of long keys and int counts, so adding an edge
+ * boxes neither.
+ *
+ * @author Victor Hazali
+ */
+public class BitsetAdjacency implements Adjacency {
+
+	/* Constants */
+	private static final int	WORD_SHIFT			= 6;
+	private static final int	WORD_BITS			= 1 << WORD_SHIFT;
+	private static final int	INITIAL_CAPACITY	= 16;
+	// Marks an empty slot of the side table, no pairKey being negative
+	private static final long	EMPTY				= -1L;
+
+	/* Member Variables */
+	private long[][]			_rows;
+	// Edges beyond the first for each pair, by pairKey, in slots a power of
+	// two long and at most half full
+	private long[]				_extraKeys;
+	private int[]				_extraCounts;
+	private int					_extraSize;
+
+	/* Constructor */
+
+	public BitsetAdjacency(int vertexCount) {
+		_rows = new long[vertexCount][(vertexCount + WORD_BITS - 1)
+				>>> WORD_SHIFT];
+		_extraKeys = new long[INITIAL_CAPACITY];
+		Arrays.fill(_extraKeys, EMPTY);
+		_extraCounts = new int[INITIAL_CAPACITY];
+		_extraSize = 0;
+	}
+
+	/**
+	 * Creates the matrix holding the edges of a buffer.
+	 *
+	 * @param vertexCount
+	 *            number of vertices
+	 * @param edges
+	 *            edges to add
+	 */
+	public BitsetAdjacency(int vertexCount, EdgeBuffer edges) {
+		this(vertexCount);
+		for (int i = 0; i < edges.getSize(); i++) {
+			addEdge(edges.getFrom(i), edges.getTo(i));
+		}
+	}
+
+	/* Public Methods */
+
+	@Override
+	public int getVertexCount() {
+		return _rows.length;
+	}
+
+	@Override
+	public void addEdge(int vertex1, int vertex2) {
+		setCount(vertex1, vertex2, countEdges(vertex1, vertex2)
+				+ edgeWeight(vertex1, vertex2));
+	}
+
+	/**
+	 * Removes one edge between a pair of vertices. Nothing is done if there
+	 * is no edge between them.
+	 */
+	@Override
+	public void removeEdge(int vertex1, int vertex2) {
+		int count = countEdges(vertex1, vertex2);
+		if (count > 0) {
+			setCount(vertex1, vertex2, count - edgeWeight(vertex1, vertex2));
+		}
+	}
+
+	@Override
+	public boolean hasEdge(int vertex1, int vertex2) {
+		return (_rows[vertex1][vertex2 >>> WORD_SHIFT] & 1L << vertex2) != 0;
+	}
+
+	@Override
+	public int countEdges(int vertex1, int vertex2) {
+		if (!hasEdge(vertex1, vertex2)) {
+			return 0;
+		}
+		if (_extraSize == 0) {
+			return 1;
+		}
+		int slot = findSlot(pairKey(vertex1, vertex2));
+		return _extraKeys[slot] == EMPTY ? 1 : 1 + _extraCounts[slot];
+	}
+
+	@Override
+	public int getDegree(int vertex) {
+		int degree = 0;
+		for (long word : _rows[vertex]) {
+			degree += Long.bitCount(word);
+		}
+		return degree;
+	}
+
+	@Override
+	public int[] getNeighbours(int vertex) {
+		long[] row = _rows[vertex];
+		int[] neighbours = new int[getDegree(vertex)];
+		int degree = 0;
+		for (int i = 0; i < row.length; i++) {
+			for (long word = row[i]; word != 0; word &= word - 1) {
+				neighbours[degree++] = i << WORD_SHIFT
+						| Long.numberOfTrailingZeros(word);
+			}
+		}
+		return neighbours;
+	}
+
+	/* Private Methods */
+
+	/**
+	 * Sets the number of edges between a pair of vertices, in both rows.
+	 */
+	private void setCount(int vertex1, int vertex2, int count) {
+		long key = pairKey(vertex1, vertex2);
+		if (count <= 0) {
+			_rows[vertex1][vertex2 >>> WORD_SHIFT] &= ~(1L << vertex2);
+			_rows[vertex2][vertex1 >>> WORD_SHIFT] &= ~(1L << vertex1);
+			removeExtra(key);
+			return;
+		}
+
+		_rows[vertex1][vertex2 >>> WORD_SHIFT] |= 1L << vertex2;
+		_rows[vertex2][vertex1 >>> WORD_SHIFT] |= 1L << vertex1;
+		if (count == 1) {
+			removeExtra(key);
+		} else {
+			putExtra(key, count - 1);
+		}
+	}
+
+	/**
+	 * Returns the slot of a key in the side table, or the empty slot where it
+	 * would go.
+	 */
+	private int findSlot(long key) {
+		int mask = _extraKeys.length - 1;
+		int slot = spread(key) & mask;
+		while (_extraKeys[slot] != EMPTY && _extraKeys[slot] != key) {
+			slot = slot + 1 & mask;
+		}
+		return slot;
+	}
+
+	private void putExtra(long key, int extra) {
+		int slot = findSlot(key);
+		_extraCounts[slot] = extra;
+		if (_extraKeys[slot] == EMPTY) {
+			_extraKeys[slot] = key;
+			_extraSize++;
+			if (2 * _extraSize > _extraKeys.length) {
+				rehash(2 * _extraKeys.length);
+			}
+		}
+	}
+
+	/**
+	 * Removes a key from the side table, if it is there. The entries after it
+	 * in its run of full slots move back into the gap where their probe
+	 * allows, so lookups never need to step over removed entries.
+	 */
+	private void removeExtra(long key) {
+		if (_extraSize == 0) {
+			return;
+		}
+		int mask = _extraKeys.length - 1;
+		int gap = findSlot(key);
+		if (_extraKeys[gap] == EMPTY) {
+			return;
+		}
+		_extraSize--;
+
+		for (int slot = gap + 1 & mask; _extraKeys[slot] != EMPTY; slot = slot
+				+ 1 & mask) {
+			// An entry may fill the gap unless its home lies after the gap
+			int home = spread(_extraKeys[slot]) & mask;
+			if ((slot - home & mask) >= (slot - gap & mask)) {
+				_extraKeys[gap] = _extraKeys[slot];
+				_extraCounts[gap] = _extraCounts[slot];
+				gap = slot;
+			}
+		}
+		_extraKeys[gap] = EMPTY;
+	}
+
+	private void rehash(int capacity) {
+		long[] keys = _extraKeys;
+		int[] counts = _extraCounts;
+		_extraKeys = new long[capacity];
+		Arrays.fill(_extraKeys, EMPTY);
+		_extraCounts = new int[capacity];
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != EMPTY) {
+				int slot = findSlot(keys[i]);
+				_extraKeys[slot] = keys[i];
+				_extraCounts[slot] = counts[i];
+			}
+		}
+	}
+
+	/**
+	 * Returns the amount one edge adds to the count of a pair: an edge from a
+	 * vertex to itself counts twice, as it ends at the vertex twice.
+	 */
+	private static int edgeWeight(int vertex1, int vertex2) {
+		return vertex1 == vertex2 ? 2 : 1;
+	}
+
+	/**
+	 * Returns the key of a pair in the side table, the same for both orders
+	 * of the vertices.
+	 */
+	private static long pairKey(int vertex1, int vertex2) {
+		return (long) Math.min(vertex1, vertex2) << Integer.SIZE
+				| Math.max(vertex1, vertex2);
+	}
+
+	/**
+	 * Hashes a key by Fibonacci hashing, keeping the high half of the
+	 * product, where every bit of the key has been mixed in.
+	 */
+	private static int spread(long key) {
+		return (int) (key * 0x9E3779B97F4A7C15L >>> Integer.SIZE);
+	}
+}
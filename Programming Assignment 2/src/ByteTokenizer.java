@@ -0,0 +1,210 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.InputMismatchException;
+import java.util.NoSuchElementException;
+
+/**
+ * This class splits an input stream into tokens separated by whitespace,
+ * working on the raw bytes. The current token is left in the buffer and only
+ * its position is given out, so reading it allocates nothing: names can be
+ * looked up with NameTable straight from the buffer, and numbers are parsed
+ * from it in place. A token never straddles two reads; the buffer is shifted,
+ * or grown if one token fills it, to keep it whole.
+ *
+ * Any byte up to and including the space character separates tokens, so line
+ * breaks of either kind are whitespace too. Like Scanner, reading past the end
+ * of the input throws NoSuchElementException and reading a number from a
+ * token that is not one throws InputMismatchException.
+ *
+ * @author Victor Hazali
+ */
+public class ByteTokenizer {
+
+	/* Constants */
+	private static final int	BUFFER_SIZE	= 1 << 16;
+	private static final byte	LINE_END	= '\n';
+
+	/* Member Variables */
+	private InputStream			_input;
+	private byte[]				_buffer;
+	// Next byte to look at, and end of the bytes read into the buffer
+	private int					_position;
+	private int					_limit;
+	private int					_tokenStart;
+	private int					_tokenLength;
+
+	/* Constructor */
+
+	public ByteTokenizer(InputStream input) {
+		_input = input;
+		_buffer = new byte[BUFFER_SIZE];
+		_position = 0;
+		_limit = 0;
+		_tokenStart = 0;
+		_tokenLength = 0;
+	}
+
+	/* Accessors and Modifiers */
+
+	/**
+	 * @return the buffer holding the current token. It changes when the next
+	 *         token is read
+	 */
+	public byte[] getBuffer() {
+		return _buffer;
+	}
+
+	public int getTokenStart() {
+		return _tokenStart;
+	}
+
+	public int getTokenLength() {
+		return _tokenLength;
+	}
+
+	/* Public Methods */
+
+	/**
+	 * Moves to the next token.
+	 *
+	 * @return true if there is one, false at the end of the input
+	 * @throws IOException
+	 *             when the input cannot be read
+	 */
+	public boolean nextToken() throws IOException {
+		// Skipping whitespace
+		while (true) {
+			if (_position == _limit && !refill(_limit)) {
+				return false;
+			}
+			if (!isWhitespace(_buffer[_position])) {
+				break;
+			}
+			_position++;
+		}
+
+		_tokenStart = _position;
+		while (true) {
+			if (_position == _limit && !refill(_tokenStart)) {
+				break;
+			}
+			if (isWhitespace(_buffer[_position])) {
+				break;
+			}
+			_position++;
+		}
+		_tokenLength = _position - _tokenStart;
+		return true;
+	}
+
+	/**
+	 * Moves to the next token, which must be there.
+	 *
+	 * @throws IOException
+	 *             when the input cannot be read
+	 * @throws NoSuchElementException
+	 *             at the end of the input
+	 */
+	public void requireToken() throws IOException, NoSuchElementException {
+		if (!nextToken()) {
+			throw new NoSuchElementException();
+		}
+	}
+
+	/**
+	 * Reads the next token as a decimal int.
+	 *
+	 * @return the number
+	 * @throws IOException
+	 *             when the input cannot be read
+	 * @throws NoSuchElementException
+	 *             at the end of the input
+	 * @throws InputMismatchException
+	 *             if the token is not a number
+	 */
+	public int nextInt() throws IOException, NoSuchElementException,
+			InputMismatchException {
+		requireToken();
+		int i = _tokenStart, end = _tokenStart + _tokenLength;
+		boolean negative = _buffer[i] == '-';
+		if (negative || _buffer[i] == '+') {
+			i++;
+		}
+		if (i == end) {
+			throw new InputMismatchException();
+		}
+
+		// Summing negatively, so Integer.MIN_VALUE fits
+		long value = 0;
+		for (; i < end; i++) {
+			int digit = _buffer[i] - '0';
+			if (digit < 0 || digit > 9) {
+				throw new InputMismatchException();
+			}
+			value = 10 * value - digit;
+			if (value < Integer.MIN_VALUE) {
+				throw new InputMismatchException();
+			}
+		}
+		if (!negative && value == Integer.MIN_VALUE) {
+			throw new InputMismatchException();
+		}
+		return (int) (negative ? value : -value);
+	}
+
+	/**
+	 * Skips the rest of the current line, including its line break.
+	 *
+	 * @throws IOException
+	 *             when the input cannot be read
+	 */
+	public void skipLine() throws IOException {
+		while (true) {
+			if (_position == _limit && !refill(_limit)) {
+				return;
+			}
+			if (_buffer[_position++] == LINE_END) {
+				return;
+			}
+		}
+	}
+
+	/* Private Methods */
+
+	/**
+	 * Checks if a byte separates tokens: any byte from 0 to the space
+	 * character. Bytes of multibyte characters are negative, so they never do.
+	 */
+	private static boolean isWhitespace(byte b) {
+		return b >= 0 && b <= ' ';
+	}
+
+	/**
+	 * Reads more input, keeping the bytes from an index on.
+	 *
+	 * @param keep
+	 *            index of the first byte to keep, _limit to keep none
+	 * @return false at the end of the input
+	 */
+	private boolean refill(int keep) throws IOException {
+		int kept = _limit - keep;
+		if (kept == _buffer.length) {
+			_buffer = Arrays.copyOf(_buffer, 2 * _buffer.length);
+		}
+		System.arraycopy(_buffer, keep, _buffer, 0, kept);
+		_position -= keep;
+		_tokenStart -= keep;
+		_limit = kept;
+
+		int read;
+		do {
+			read = _input.read(_buffer, _limit, _buffer.length - _limit);
+		} while (read == 0);
+		if (read < 0) {
+			return false;
+		}
+		_limit += read;
+		return true;
+	}
+}
@@ -0,0 +1,69 @@
+import java.util.Arrays;
+
+/**
+ * This class collects the edges of a graph in the order they are added, as
+ * two growing arrays of vertex indices, until the graph knows enough about its
+ * edges to choose how to store them. It takes 8 bytes per edge and nothing per
+ * vertex.
+ *
+ * @author Victor Hazali
+ */
+public class EdgeBuffer {
+
+	/* Constants */
+	private static final int	INITIAL_CAPACITY	= 16;
+
+	/* Member Variables */
+	private int[]				_from;
+	private int[]				_to;
+	private int					_size;
+
+	/* Constructor */
+
+	public EdgeBuffer() {
+		_from = new int[INITIAL_CAPACITY];
+		_to = new int[INITIAL_CAPACITY];
+		_size = 0;
+	}
+
+	/* Accessors and Modifiers */
+
+	public int getSize() {
+		return _size;
+	}
+
+	public int getFrom(int edge) {
+		return _from[edge];
+	}
+
+	public int getTo(int edge) {
+		return _to[edge];
+	}
+
+	/* Public Methods */
+
+	/**
+	 * Appends an edge to the buffer.
+	 *
+	 * @param vertex1
+	 *            index of first vertex
+	 * @param vertex2
+	 *            index of second vertex
+	 */
+	public void add(int vertex1, int vertex2) {
+		if (_size == _from.length) {
+			_from = Arrays.copyOf(_from, 2 * _size);
+			_to = Arrays.copyOf(_to, 2 * _size);
+		}
+		_from[_size] = vertex1;
+		_to[_size] = vertex2;
+		_size++;
+	}
+
+	/**
+	 * Empties the buffer, keeping its arrays for the next edges.
+	 */
+	public void clear() {
+		_size = 0;
+	}
+}
@@ -1,72 +1,120 @@
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Map;
 
 /**
  * This class specifies an undirected graph G
  * 
+ * The edges are collected in an EdgeBuffer until the first time they are
+ * looked up. The graph then stores them in an adjacency matrix of bits if
+ * there are enough of them for the matrix to be worth its V^2 bits, and in
+ * compressed sparse rows otherwise, so sparse graphs with many vertices take
+ * memory in proportion to V + E.
+ * 
+ * Vertices are numbered in the order they are added, and their names are
+ * interned in a NameTable. Besides the methods taking names as Strings, there
+ * are ones taking names as bytes, or the numbers of the vertices, so a graph
+ * can be read from a ByteTokenizer without allocating anything per edge.
+ * 
+ * The state of the vertices is kept in arrays indexed by their numbers: the
+ * NameTable for their names, a BitSet of the traversed ones and the number of
+ * edges at each. Finding a vertex by name takes O(1) expected time, and Vertex
+ * objects are only made when getVertices asks for them.
+ * 
  * @author Victor Hazali
  */
 public class Graph {
 
 	/* Constants */
-	private static final boolean	SUCCEEDED	= true;
-	private static final boolean	FAILED		= false;
+	private static final boolean	SUCCEEDED		= true;
+	private static final boolean	FAILED			= false;
+	// The matrix is chosen unless it takes this many times the memory of the
+	// sparse rows or more
+	private static final int		SPARSE_RATIO	= 16;
+	// Bytes per edge of the sparse rows, an entry at both ends with a count
+	private static final int		EDGE_BYTES		= 16;
+	private static final int		ENTRY_BYTES		= 4;
+	private static final int		WORD_BITS		= 64;
+	private static final int		WORD_BYTES		= 8;
+	private static final int		NO_VERTEX		= -1;
 
 	/* Member Variables */
-	private int[][]					_adjMat;
-	private Map<String, Integer>	_nameMapping;
+	private int						_capacity;
+	private EdgeBuffer				_edgeBuffer;
+	private Adjacency				_adjacency;
+	private NameTable				_nameTable;
 	private int						_currVertexCnt;
-	private List<Vertex>			_vertices;
+	private BitSet					_traversed;
+	// Number of edges at each vertex, a loop counting twice
+	private int[]					_degrees;
 	private int						_edgeCount;
 
 	/* Constructor */
 
 	public Graph(int vertexCount) {
-		setAdjMat(new int[vertexCount][vertexCount]);
-		setNameMapping(new HashMap<String, Integer>());
+		setCapacity(vertexCount);
+		_edgeBuffer = new EdgeBuffer();
+		_adjacency = null;
+		setNameTable(new NameTable());
 		setCurrVertexCnt(0);
-		setVertices(new ArrayList<Vertex>());
+		_traversed = new BitSet(vertexCount);
+		_degrees = new int[vertexCount];
 		setEdgeCount(0);
 	}
 
 	/* Accessors and Modifiers */
 
-	public int[][] getAdjMat() {
-		return _adjMat;
+	public int getCapacity() {
+		return _capacity;
 	}
 
-	public void setAdjMat(int[][] adjMat) {
-		_adjMat = adjMat;
+	public void setCapacity(int capacity) {
+		_capacity = capacity;
+	}
+
+	/**
+	 * Returns the storage of the edges, choosing it first if the edges are
+	 * still buffered.
+	 */
+	public Adjacency getAdjacency() {
+		if (_adjacency == null) {
+			_adjacency = chooseAdjacency(getCapacity(), _edgeBuffer);
+			_edgeBuffer = null;
+		}
+		return _adjacency;
 	}
 
 	public void addEdge(int vertex1, int vertex2) {
-		_adjMat[vertex1][vertex2] += 1;
-		_adjMat[vertex2][vertex1] += 1;
+		if (_adjacency == null) {
+			_edgeBuffer.add(vertex1, vertex2);
+		} else {
+			_adjacency.addEdge(vertex1, vertex2);
+		}
+		_degrees[vertex1]++;
+		_degrees[vertex2]++;
 		incEdgeCnt();
 	}
 
 	public void removeEdge(int vertex1, int vertex2) {
-		_adjMat[vertex1][vertex2] -= 1;
-		_adjMat[vertex2][vertex1] -= 1;
+		getAdjacency().removeEdge(vertex1, vertex2);
+		_degrees[vertex1]--;
+		_degrees[vertex2]--;
 		decEdgeCnt();
 	}
 
-	public Map<String, Integer> getNameMapping() {
-		return _nameMapping;
-	}
-
-	public void setNameMapping(Map<String, Integer> nameMapping) {
-		_nameMapping = nameMapping;
+	public NameTable getNameTable() {
+		return _nameTable;
 	}
 
-	public void addNameMapping(String name, int value) {
-		_nameMapping.put(name, value);
+	public void setNameTable(NameTable nameTable) {
+		_nameTable = nameTable;
 	}
 
+	/**
+	 * @return index of the vertex with the given name, or -1 if there is none
+	 */
 	public int getIndexFromName(String name) {
-		return _nameMapping.get(name);
+		return _nameTable.find(name);
 	}
 
 	public int getCurrVertexCnt() {
@@ -81,17 +129,57 @@ public class Graph {
 		_currVertexCnt = _currVertexCnt + 1;
 	}
 
+	/**
+	 * Lists the vertices of the graph in the order they were added. The list
+	 * and its Vertex objects are made anew on each call, so changing them does
+	 * not change the graph.
+	 * 
+	 * @return a new list of the vertices
+	 */
 	public List<Vertex> getVertices() {
-		return _vertices;
+		List<Vertex> vertices = new ArrayList<Vertex>(getCurrVertexCnt());
+		for (int i = 0; i < getCurrVertexCnt(); i++) {
+			Vertex vertex = new Vertex(getName(i));
+			vertex.setTraversed(isTraversed(i));
+			vertices.add(vertex);
+		}
+		return vertices;
 	}
 
+	/**
+	 * Replaces the vertices of the graph with those in a list, in its order.
+	 * The edges are kept, joining the vertices by their new numbers.
+	 * 
+	 * @param vertices
+	 *            vertices to put in the graph
+	 */
 	public void setVertices(List<Vertex> vertices) {
-		_vertices = vertices;
+		setNameTable(new NameTable());
+		setCurrVertexCnt(0);
+		_traversed.clear();
+		for (Vertex vertex : vertices) {
+			insertVertex(vertex);
+		}
 	}
 
-	private void addVertex(Vertex vertex) {
-		_vertices.add(vertex);
-		incCurrVertexCnt();
+	public String getName(int vertex) {
+		return _nameTable.getName(vertex);
+	}
+
+	public boolean isTraversed(int vertex) {
+		return _traversed.get(vertex);
+	}
+
+	/**
+	 * Counts the edges at a vertex, an edge from the vertex to itself counting
+	 * twice.
+	 * 
+	 * @param vertex
+	 *            index of the vertex
+	 * @return the number of edges at the vertex
+	 */
+	public int countEdges(int vertex) {
+		return _degrees[vertex];
 	}
 
 	public int getEdgeCount() {
@@ -126,22 +214,65 @@ public class Graph {
 	public boolean addVertex(String name) {
 
 		// Checks if vertex is already in graph
-		if (getNameMapping().containsKey(name)) {
+		if (getIndexFromName(name) != NO_VERTEX) {
 			return SUCCEEDED;
 		}
 
 		// Check if limit of vertices reached
-		if (getCurrVertexCnt() == getAdjMat().length) {
+		if (getCurrVertexCnt() == getCapacity()) {
 			return FAILED;
 		}
 
 		// Adding new vertex
-		addNameMapping(name, getCurrVertexCnt());
-		addVertex(new Vertex(name));
+		_nameTable.intern(name);
+		incCurrVertexCnt();
 
 		return SUCCEEDED;
 	}
 
+	/**
+	 * Adds a vertex into the graph, as addVertex(String) does, with its name
+	 * given as bytes. Nothing is allocated if the vertex is already in the
+	 * graph.
+	 * 
+	 * @param bytes
+	 *            buffer holding the name of the vertex
+	 * @param offset
+	 *            index of the first byte of the name
+	 * @param length
+	 *            number of bytes of the name
+	 * @return index of the vertex, or -1 if it is not in the graph and the
+	 *         limit of vertices is reached
+	 */
+	public int addVertex(byte[] bytes, int offset, int length) {
+		int index = _nameTable.find(bytes, offset, length);
+		if (index != NO_VERTEX) {
+			return index;
+		}
+		if (getCurrVertexCnt() == getCapacity()) {
+			return NO_VERTEX;
+		}
+
+		index = _nameTable.intern(bytes, offset, length);
+		incCurrVertexCnt();
+		return index;
+	}
+
+	/**
+	 * Finds a vertex by its name given as bytes.
+	 * 
+	 * @param bytes
+	 *            buffer holding the name of the vertex
+	 * @param offset
+	 *            index of the first byte of the name
+	 * @param length
+	 *            number of bytes of the name
+	 * @return index of the vertex, or -1 if it is not in the graph
+	 */
+	public int findVertex(byte[] bytes, int offset, int length) {
+		return _nameTable.find(bytes, offset, length);
+	}
+
 	/**
 	 * Inserts a vertex into the graph. If the number of vertices currently in
 	 * the graph is already at its limit, the new vertex will not be inserted.
@@ -155,18 +286,19 @@ public class Graph {
 	public boolean insertVertex(Vertex vertex) {
 
 		// Checks if vertex is already in graph
-		if (getVertices().contains(vertex)) {
+		if (getIndexFromName(vertex.getName()) != NO_VERTEX) {
 			return SUCCEEDED;
 		}
 
 		// Check if limit of vertices reached
-		if (getCurrVertexCnt() == getAdjMat().length) {
+		if (getCurrVertexCnt() == getCapacity()) {
 			return FAILED;
 		}
 
 		// Adding the new vertex
-		addNameMapping(vertex.getName(), getCurrVertexCnt());
-		addVertex(vertex);
+		_traversed.set(_nameTable.intern(vertex.getName()),
+				vertex.isTraversed());
+		incCurrVertexCnt();
 
 		return SUCCEEDED;
 	}
@@ -210,26 +342,36 @@ public class Graph {
 	 *         otherwise.
 	 */
 	public boolean traverse(String name) {
+		return traverse(getIndexFromName(name));
+	}
+
+	/**
+	 * Marks a vertex as traversed, as traverse(String) does.
+	 * 
+	 * @param vertex
+	 *            index of vertex to traverse, or -1 for a vertex not in the
+	 *            graph
+	 * @return true if the node has been successfully traversed, false
+	 *         otherwise.
+	 */
+	public boolean traverse(int vertex) {
 
 		// Checks if graph has any vertices
-		if (getVertices() == null || getVertices().size() == 0) {
+		if (getCurrVertexCnt() == 0) {
 			return FAILED;
 		}
 
 		// Checks if graph contain the vertex to traverse
-		if (!getNameMapping().containsKey(name)) {
+		if (vertex == NO_VERTEX) {
 			return FAILED;
 		}
 
-		// Gets a pointer to the vertex to be traversed
-		Vertex toTraverse = getVertices().get(getIndexFromName(name));
-
 		// If vertex is already traversed, return
-		if (toTraverse.isTraversed()) {
+		if (isTraversed(vertex)) {
 			return FAILED;
 		}
 
-		toTraverse.setTraversed(true);
+		_traversed.set(vertex);
 		return SUCCEEDED;
 	}
 
@@ -246,9 +388,25 @@ public class Graph {
 	 * @return true if successfully traverse to the next node, false otherwise
 	 */
 	public boolean traverse(String from, String to) {
+		return traverse(getIndexFromName(from), getIndexFromName(to));
+	}
+
+	/**
+	 * Traverses from a vertex to the next vertex, as traverse(String, String)
+	 * does.
+	 * 
+	 * @param from
+	 *            index of vertex to traverse from, or -1 for a vertex not in
+	 *            the graph
+	 * @param to
+	 *            index of vertex to traverse to, or -1 for a vertex not in the
+	 *            graph
+	 * @return true if successfully traverse to the next node, false otherwise
+	 */
+	public boolean traverse(int from, int to) {
 
 		// Checks if graph has vertices
-		if (getVertices() == null || getVertices().size() == 0) {
+		if (getCurrVertexCnt() == 0) {
 			return FAILED;
 		}
 
@@ -258,13 +416,11 @@ public class Graph {
 		}
 
 		// Checks if an edge exist between these two nodes
-		int n1 = getIndexFromName(from);
-		int n2 = getIndexFromName(to);
-		if (!edgeExists(n1, n2)) {
+		if (from == NO_VERTEX || to == NO_VERTEX || !edgeExists(from, to)) {
 			return FAILED;
 		}
 		if (traverse(to)) {
-			removeEdge(n1, n2);
+			removeEdge(from, to);
 			return SUCCEEDED;
 		}
 
@@ -278,15 +434,11 @@ public class Graph {
 	 *            the first vertex
 	 * @param to
 	 *            the second vertex
-	 * @return true if the adjacency matrix entry of [from][to] is greater than
-	 *         0 (there is at least one edge). False otherwise.
+	 * @return true if the edge count of [from][to] is greater than 0 (there
+	 *         is at least one edge). False otherwise.
 	 */
 	public boolean edgeExists(int from, int to) {
-		int[][] matrix = getAdjMat();
-		if (matrix[from][to] > 0) {
-			return true;
-		}
-		return false;
+		return getAdjacency().hasEdge(from, to);
 	}
 
 	/**
@@ -297,12 +449,63 @@ public class Graph {
 	 * @param to
 	 *            Name of second vertex
 	 * @return true if there exist at least an edge between the two vertices as
-	 *         specified by edgeExists(int from, int to). False otherwise
+	 *         specified by edgeExists(int from, int to). False otherwise, or if
+	 *         either vertex is not in the graph
 	 */
 	public boolean edgeExists(String from, String to) {
 		int n1 = getIndexFromName(from);
 		int n2 = getIndexFromName(to);
+		if (n1 == NO_VERTEX || n2 == NO_VERTEX) {
+			return false;
+		}
 
 		return edgeExists(n1, n2);
 	}
+
+	/**
+	 * Lists the vertices joined to a vertex by at least one edge.
+	 * 
+	 * @param vertex
+	 *            index of the vertex
+	 * @return a new array of the indices of the neighbours, in increasing
+	 *         order
+	 */
+	public int[] getNeighbours(int vertex) {
+		return getAdjacency().getNeighbours(vertex);
+	}
+
+	/**
+	 * Counts the vertices joined to a vertex by at least one edge.
+	 * 
+	 * @param vertex
+	 *            index of the vertex
+	 * @return the number of neighbours
+	 */
+	public int getDegree(int vertex) {
+		return getAdjacency().getDegree(vertex);
+	}
+
+	/* Private Methods */
+
+	/**
+	 * Chooses how to store the edges of a buffer. The matrix of bits answers
+	 * lookups fastest, so it is only given up for sparse rows when it would
+	 * take SPARSE_RATIO times their memory or more.
+	 * 
+	 * @param vertexCount
+	 *            number of vertices
+	 * @param edges
+	 *            the edges collected so far
+	 * @return a matrix of bits or sparse rows holding the edges
+	 */
+	private static Adjacency chooseAdjacency(int vertexCount, EdgeBuffer edges) {
+		long matrixBytes = (long) vertexCount
+				* ((vertexCount + WORD_BITS - 1) / WORD_BITS) * WORD_BYTES;
+		long sparseBytes = (long) vertexCount * ENTRY_BYTES
+				+ (long) edges.getSize() * EDGE_BYTES;
+		if (matrixBytes >= SPARSE_RATIO * sparseBytes) {
+			return new SparseAdjacency(vertexCount, edges);
+		}
+		return new BitsetAdjacency(vertexCount, edges);
+	}
 }
@@ -1,6 +1,11 @@
-import java.util.Collections;
-import java.util.List;
-import java.util.Scanner;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Random;
 
 /**
  * This class will transform an instance of Dir_Ham_Cyc into an instance of
@@ -46,101 +51,234 @@ import java.util.Scanner;
  *              1<=T<= 50; 2<=Nv<=300; 2<=Me<=30000
  *              Memory: 256M
  *              Running time: 2 seconds per T testcases.
+ * @options --train: no input is read and nothing is written. Instead
+ *          synthetic test cases are transformed, so launch.sh can archive
+ *          the classes they load.
  * @author Victor Hazali
  */
 public class GraphReductor {
 
 	public static final boolean	DEBUG_MODE	= false;
 
-	public static void main(String[] args) {
+	// Command line option to run on synthetic test cases, as the training
+	// run of launch.sh
+	private static final String	TRAIN_OPTION	= "--train";
+	// Test cases, vertices and edges of each case, and repetitions of the
+	// training run
+	private static final int	TRAIN_CASES		= 2;
+	private static final int	TRAIN_VERTICES	= 300;
+	private static final int	TRAIN_EDGES		= 3000;
+	private static final int	TRAIN_ROUNDS	= 3;
+	private static final long	TRAIN_SEED		= 3230;
+	// Initial size of the buffer names of head and tail vertices are made in
+	private static final int	NAME_BUFFER		= 16;
+	// Initial size of the buffer the output of a test case is written into
+	private static final int	OUTPUT_BUFFER	= 1 << 16;
+	private static final byte[]	LINE_END		= System.lineSeparator()
+														.getBytes();
+
+	/**
+	 * Reduces the test cases read from a stream, writing the reduced graphs
+	 * to another one. BatchServer hosts the program through this method, so
+	 * it returns the exit status rather than exiting.
+	 * 
+	 * @param input
+	 *            stream to read the test cases from
+	 * @param out
+	 *            stream to write the reduced graphs to
+	 * @param args
+	 *            command line options
+	 * @return the exit status of the program
+	 * @throws IOException
+	 *             when the input cannot be read
+	 */
+	public static int run(InputStream input, PrintStream out, String[] args)
+			throws IOException {
+
+		if (args.length > 0 && args[0].equals(TRAIN_OPTION)) {
+			train();
+			return 0;
+		}
 
 		// Variables initialization / declaration
-		Scanner sc = new Scanner(System.in);
-		int testcases = 0, numVert = 0, numEdge = 0, vertexCnt = 0;
-		String[] edges, names;
-		Vertex[] vertices = new Vertex[7];
+		ByteTokenizer in = new ByteTokenizer(input);
+		int testcases = 0, numVert = 0, numEdge = 0, length = 0;
+		int vertex, head, tail, edgeHead = 0;
+		byte[] name = new byte[NAME_BUFFER];
 		Graph graph;
 
 		// Reading the number of testcases
-		testcases = sc.nextInt();
-		sc.nextLine();
+		testcases = in.nextInt();
+		in.skipLine();
 
 		// Loop for T testcases
 		for (int i = 0; i < testcases; i++) {
 
 			// Reading Nv and Me
-			numVert = sc.nextInt();
-			numEdge = sc.nextInt();
-			sc.nextLine();
-
-			// initializing array of edges
-			edges = new String[numEdge];
-
-			// Reading all edges
-			for (int j = 0; j < numEdge; j++) {
-				edges[j] = sc.nextLine();
-			}
+			numVert = in.nextInt();
+			numEdge = in.nextInt();
+			in.skipLine();
 
 			// Creating the graph
 			graph = new Graph(3 * numVert);
 
-			// Loop through all edges in the input
-			for (String e : edges) {
+			// Loop through all edges in the input, reading both of their
+			// vertices straight into the graph
+			for (int j = 0; j < numEdge; j++) {
+				for (int end = 0; end < 2; end++) {
+					in.requireToken();
+					length = in.getTokenLength();
+					if (name.length < length) {
+						name = new byte[length];
+					}
 
-				// index to keep track of the 6 vertices in this edge
-				vertexCnt = 0;
-				names = e.split("\\s+");
+					// Adding the vertex, its head-vertex and its tail-vertex
+					vertex = graph.addVertex(in.getBuffer(),
+							in.getTokenStart(), length);
+					Vertex.writeHeadName(in.getBuffer(), in.getTokenStart(),
+							length, name);
+					head = graph.addVertex(name, 0, length);
+					Vertex.writeTailName(in.getBuffer(), in.getTokenStart(),
+							length, name);
+					tail = graph.addVertex(name, 0, length);
 
-				for (String n : names) {
+					// Adding edges between vertex and its head and tail
+					addEdge(graph, vertex, head);
+					addEdge(graph, vertex, tail);
 
-					// Creating vertices
-					vertices[vertexCnt] = new Vertex(n);
-					vertices[vertexCnt + 1] = vertices[vertexCnt]
-							.getHeadVertex();
-					vertices[vertexCnt + 2] = vertices[vertexCnt]
-							.getTailVertex();
+					// Adding edge e into the graph, from the head-vertex of
+					// its first vertex to the tail-vertex of its second
+					if (end == 0) {
+						edgeHead = head;
+					} else {
+						addEdge(graph, edgeHead, tail);
+					}
+				}
+			}
+
+			// Printing out Nv and Me, and then the edges, in one write
+			ByteArrayOutputStream output = new ByteArrayOutputStream(
+					OUTPUT_BUFFER);
+			writeLine(output, (numVert * 3 + " " + (numVert * 2 + numEdge))
+					.getBytes());
+			writeEdges(graph, output);
+			output.writeTo(out);
+			out.flush();
+		}
+		return 0;
+	}
 
-					// Adding vertices into the graph
-					graph.insertVertex(vertices[vertexCnt]);
-					graph.insertVertex(vertices[vertexCnt + 1]);
-					graph.insertVertex(vertices[vertexCnt + 2]);
+	public static void main(String[] args) throws IOException {
+		System.exit(run(System.in, System.out, args));
+	}
 
-					// Adding edge between header-vertex and vertex
-					graph.addEdge(n, vertices[vertexCnt + 1].getName());
+	/**
+	 * Writes the edges of a graph, one line for each pair of distinct vertices
+	 * joined by at least one edge, with the pairs in lexicographic order of
+	 * the names of their vertices.
+	 * 
+	 * The vertices are sorted by name once, and each one's neighbours that
+	 * come after it are then sorted by their rank in that order, so this takes
+	 * O((V + E) log V) time rather than looking up every one of the V^2 pairs.
+	 * 
+	 * @param graph
+	 *            the graph
+	 * @param output
+	 *            buffer to write the lines into
+	 */
+	private static void writeEdges(Graph graph, ByteArrayOutputStream output) {
+		int vertexCount = graph.getCurrVertexCnt();
 
-					// Adding edge between tail-vertex and vertex
-					graph.addEdge(n, vertices[vertexCnt + 2].getName());
+		// Sorting the vertices in the graph lexicographically
+		String[] sorted = new String[vertexCount];
+		for (int i = 0; i < vertexCount; i++) {
+			sorted[i] = graph.getName(i);
+		}
+		Arrays.sort(sorted);
+		int[] order = new int[vertexCount];
+		int[] rank = new int[vertexCount];
+		byte[][] names = new byte[vertexCount][];
+		for (int r = 0; r < vertexCount; r++) {
+			order[r] = graph.getIndexFromName(sorted[r]);
+			rank[order[r]] = r;
+			names[r] = sorted[r].getBytes();
+		}
 
-					vertexCnt += 3;
+		byte[] space = " ".getBytes();
+		int[] later = new int[vertexCount];
+		for (int r = 0; r < vertexCount; r++) {
+			// Ranks of the neighbours after this vertex, in increasing order
+			int count = 0;
+			for (int neighbour : graph.getNeighbours(order[r])) {
+				if (rank[neighbour] > r) {
+					later[count++] = rank[neighbour];
 				}
+			}
+			Arrays.sort(later, 0, count);
 
-				// Adding edge e into the graph
-				graph.addEdge(vertices[vertexCnt - 5].getName(),
-						vertices[vertexCnt - 1].getName());
+			for (int j = 0; j < count; j++) {
+				output.write(names[r], 0, names[r].length);
+				output.write(space, 0, space.length);
+				writeLine(output, names[later[j]]);
 			}
+		}
+	}
 
-			// Printing out Nv and Me
-			System.out.println(numVert * 3 + " " + (numVert * 2 + numEdge));
+	/**
+	 * Writes a line into a buffer, ending it as println would.
+	 */
+	private static void writeLine(ByteArrayOutputStream output, byte[] line) {
+		output.write(line, 0, line.length);
+		output.write(LINE_END, 0, LINE_END.length);
+	}
 
-			// Printing out the edges
+	/**
+	 * Adds an edge between two vertices if both are in the graph.
+	 */
+	private static void addEdge(Graph graph, int vertex1, int vertex2) {
+		if (vertex1 >= 0 && vertex2 >= 0) {
+			graph.addEdge(vertex1, vertex2);
+		}
+	}
 
-			// First we get all the vertices in the graph
-			List<Vertex> graphVertices = graph.getVertices();
-			// Sorting the vertices in the graph lexicographically
-			Collections.sort(graphVertices);
+	/**
+	 * Transforms synthetic test cases TRAIN_ROUNDS times, from memory and
+	 * discarding the output, so that launch.sh can record the classes loaded
+	 * along the way in a shared archive.
+	 */
+	public static void train() throws IOException {
+		byte[] input = trainingInput(new Random(TRAIN_SEED)).getBytes();
+		PrintStream discard = new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
 
-			String v1, v2;
-			// Printing out all the edges
-			for (int j = 0; j < graphVertices.size() - 1; j++) {
-				v1 = graphVertices.get(j).getName();
-				for (int k = j + 1; k < graphVertices.size(); k++) {
-					v2 = graphVertices.get(k).getName();
-					if (graph.edgeExists(v1, v2)) {
-						System.out.println(v1 + " " + v2);
-					}
-				}
+			@Override
+			public void write(byte[] b, int offset, int length) {
 			}
+		});
+		for (int round = 0; round < TRAIN_ROUNDS; round++) {
+			run(new ByteArrayInputStream(input), discard, new String[0]);
 		}
 	}
 
+	/**
+	 * Creates the input of the training run: graphs with random directed
+	 * edges between all of their vertices.
+	 */
+	private static String trainingInput(Random random) {
+		StringBuilder input = new StringBuilder();
+		input.append(TRAIN_CASES).append('\n');
+		for (int i = 0; i < TRAIN_CASES; i++) {
+			input.append(TRAIN_VERTICES).append(' ').append(TRAIN_EDGES)
+					.append('\n');
+			for (int j = 0; j < TRAIN_EDGES; j++) {
+				int u = j < TRAIN_VERTICES ? j + 1 : 1 + random
+						.nextInt(TRAIN_VERTICES);
+				int v = 1 + random.nextInt(TRAIN_VERTICES);
+				input.append('V').append(u).append(" V").append(v).append('\n');
+			}
+		}
+		return input.toString();
+	}
 }
@@ -0,0 +1,319 @@
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * This class interns vertex names, giving each distinct name an id from 0 up
+ * in the order the names are first seen. Names are kept as bytes, one after
+ * another in a single pool, and found through an open addressing hash table
+ * of ids with linear probing. A name can be looked up straight from the input
+ * buffer it was read into, so reading a graph needs no String, array or
+ * Integer for each edge.
+ *
+ * Names are decoded with the default charset, as Scanner would, only when
+ * getName asks for them. A name with any byte outside ASCII is identified by
+ * what it decodes to instead, so that bytes the charset cannot map match the
+ * same name as they did when every name was read into a String.
+ *
+ * @author Victor Hazali
+ */
+public class NameTable {
+
+	/* Constants */
+	private static final int	INITIAL_CAPACITY	= 16;
+	private static final int	INITIAL_POOL		= 256;
+	// Largest character compared to a byte directly by find(String)
+	private static final char	MAX_ASCII			= 0x7F;
+	private static final int	NOT_FOUND			= -1;
+	// Marks an empty slot of the hash table
+	private static final int	EMPTY				= -1;
+
+	/* Member Variables */
+	private byte[]				_pool;
+	// Name of id i is in _pool from _offsets[i] to _offsets[i + 1]
+	private int[]				_offsets;
+	private int[]				_hashes;
+	// Whether each name is in the hash table rather than in _decoded
+	private boolean[]			_hashed;
+	private String[]			_names;
+	private int					_size;
+	// Ids by hash, a power of two long and at most half full
+	private int[]				_slots;
+	// Ids of the names with bytes outside ASCII, by their decoded form
+	private HashMap<String, Integer>	_decoded;
+
+	/* Constructor */
+
+	public NameTable() {
+		_pool = new byte[INITIAL_POOL];
+		_offsets = new int[INITIAL_CAPACITY + 1];
+		_hashes = new int[INITIAL_CAPACITY];
+		_hashed = new boolean[INITIAL_CAPACITY];
+		_names = new String[INITIAL_CAPACITY];
+		_size = 0;
+		_slots = new int[2 * INITIAL_CAPACITY];
+		Arrays.fill(_slots, EMPTY);
+		_decoded = new HashMap<String, Integer>();
+	}
+
+	/* Accessors and Modifiers */
+
+	/**
+	 * @return the number of names interned
+	 */
+	public int getSize() {
+		return _size;
+	}
+
+	/**
+	 * Returns the name with an id, decoding it the first time.
+	 *
+	 * @param id
+	 *            id of the name
+	 * @return the name
+	 */
+	public String getName(int id) {
+		if (_names[id] == null) {
+			_names[id] = new String(_pool, _offsets[id], _offsets[id + 1]
+					- _offsets[id]);
+		}
+		return _names[id];
+	}
+
+	/* Public Methods */
+
+	/**
+	 * Finds the id of a name held in a range of bytes.
+	 *
+	 * @param bytes
+	 *            buffer holding the name
+	 * @param offset
+	 *            index of the first byte of the name
+	 * @param length
+	 *            number of bytes of the name
+	 * @return id of the name, or -1 if it was never interned
+	 */
+	public int find(byte[] bytes, int offset, int length) {
+		if (!isAscii(bytes, offset, length)) {
+			return findDecoded(new String(bytes, offset, length));
+		}
+		int hash = hash(bytes, offset, length);
+		for (int slot = hash & (_slots.length - 1);; slot = slot + 1
+				& (_slots.length - 1)) {
+			int id = _slots[slot];
+			if (id == EMPTY) {
+				return NOT_FOUND;
+			}
+			if (_hashes[id] == hash && equals(id, bytes, offset, length)) {
+				return id;
+			}
+		}
+	}
+
+	/**
+	 * Finds the id of a name. Names of ASCII characters are compared with the
+	 * pool without being encoded.
+	 *
+	 * @param name
+	 *            the name
+	 * @return id of the name, or -1 if it was never interned
+	 */
+	public int find(String name) {
+		int hash = 0;
+		for (int i = 0; i < name.length(); i++) {
+			if (name.charAt(i) > MAX_ASCII) {
+				return findDecoded(name);
+			}
+			hash = 31 * hash + name.charAt(i);
+		}
+		hash = spread(hash);
+
+		for (int slot = hash & (_slots.length - 1);; slot = slot + 1
+				& (_slots.length - 1)) {
+			int id = _slots[slot];
+			if (id == EMPTY) {
+				return NOT_FOUND;
+			}
+			if (_hashes[id] == hash && equals(id, name)) {
+				return id;
+			}
+		}
+	}
+
+	/**
+	 * Interns a name held in a range of bytes. The bytes are copied.
+	 *
+	 * @param bytes
+	 *            buffer holding the name
+	 * @param offset
+	 *            index of the first byte of the name
+	 * @param length
+	 *            number of bytes of the name
+	 * @return id of the name, a new one if it was never interned
+	 */
+	public int intern(byte[] bytes, int offset, int length) {
+		int id = find(bytes, offset, length);
+		if (id != NOT_FOUND) {
+			return id;
+		}
+		if (!isAscii(bytes, offset, length)) {
+			return addDecoded(bytes, offset, length,
+					new String(bytes, offset, length));
+		}
+		return add(bytes, offset, length, hash(bytes, offset, length));
+	}
+
+	/**
+	 * Interns a name.
+	 *
+	 * @param name
+	 *            the name
+	 * @return id of the name, a new one if it was never interned
+	 */
+	public int intern(String name) {
+		int id = find(name);
+		if (id != NOT_FOUND) {
+			return id;
+		}
+		byte[] bytes = name.getBytes();
+		if (isAscii(bytes, 0, bytes.length)) {
+			id = add(bytes, 0, bytes.length, hash(bytes, 0, bytes.length));
+		} else {
+			id = addDecoded(bytes, 0, bytes.length, name);
+		}
+		_names[id] = name;
+		return id;
+	}
+
+	/* Private Methods */
+
+	/**
+	 * Adds a name that is not in the table yet.
+	 *
+	 * @return the new id of the name
+	 */
+	private int add(byte[] bytes, int offset, int length, int hash) {
+		return add(bytes, offset, length, hash, true);
+	}
+
+	/**
+	 * Adds a name that is not in the table yet, placing it in the hash table
+	 * only if asked to.
+	 *
+	 * @return the new id of the name
+	 */
+	private int add(byte[] bytes, int offset, int length, int hash,
+			boolean hashed) {
+		if (_size == _hashes.length) {
+			_offsets = Arrays.copyOf(_offsets, 2 * _size + 1);
+			_hashes = Arrays.copyOf(_hashes, 2 * _size);
+			_hashed = Arrays.copyOf(_hashed, 2 * _size);
+			_names = Arrays.copyOf(_names, 2 * _size);
+		}
+		int start = _offsets[_size];
+		if (start + length > _pool.length) {
+			_pool = Arrays.copyOf(_pool, Math.max(2 * _pool.length, start
+					+ length));
+		}
+		System.arraycopy(bytes, offset, _pool, start, length);
+
+		int id = _size++;
+		_offsets[_size] = start + length;
+		_hashes[id] = hash;
+		_hashed[id] = hashed;
+		if (2 * _size > _slots.length) {
+			rehash(2 * _slots.length);
+		} else if (hashed) {
+			place(id);
+		}
+		return id;
+	}
+
+	/**
+	 * Adds a name with bytes outside ASCII, keeping it out of the hash table.
+	 *
+	 * @return the new id of the name
+	 */
+	private int addDecoded(byte[] bytes, int offset, int length, String name) {
+		int id = add(bytes, offset, length, 0, false);
+		_decoded.put(name, id);
+		return id;
+	}
+
+	private int findDecoded(String name) {
+		Integer id = _decoded.get(name);
+		return id == null ? NOT_FOUND : id;
+	}
+
+	/**
+	 * Rebuilds the hash table with more slots.
+	 */
+	private void rehash(int capacity) {
+		_slots = new int[capacity];
+		Arrays.fill(_slots, EMPTY);
+		for (int id = 0; id < _size; id++) {
+			if (_hashed[id]) {
+				place(id);
+			}
+		}
+	}
+
+	private void place(int id) {
+		int slot = _hashes[id] & (_slots.length - 1);
+		while (_slots[slot] != EMPTY) {
+			slot = slot + 1 & (_slots.length - 1);
+		}
+		_slots[slot] = id;
+	}
+
+	private boolean equals(int id, byte[] bytes, int offset, int length) {
+		int start = _offsets[id];
+		if (_offsets[id + 1] - start != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (_pool[start + i] != bytes[offset + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean equals(int id, String name) {
+		int start = _offsets[id];
+		if (_offsets[id + 1] - start != name.length()) {
+			return false;
+		}
+		for (int i = 0; i < name.length(); i++) {
+			if (_pool[start + i] != name.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Hashes a name the way String does, spread so the low bits used to pick
+	 * a slot depend on all of them. An ASCII name hashes the same as its bytes.
+	 */
+	private static int hash(byte[] bytes, int offset, int length) {
+		int hash = 0;
+		for (int i = offset; i < offset + length; i++) {
+			hash = 31 * hash + bytes[i];
+		}
+		return spread(hash);
+	}
+
+	private static boolean isAscii(byte[] bytes, int offset, int length) {
+		for (int i = offset; i < offset + length; i++) {
+			if (bytes[i] < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int spread(int hash) {
+		hash *= 0x9E3779B9;
+		return hash ^ hash >>> 16;
+	}
+}
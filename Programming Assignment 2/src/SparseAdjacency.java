@@ -0,0 +1,208 @@
+import java.util.Arrays;
+
+/**
+ * This class stores the edges of a graph in compressed sparse row form. The
+ * neighbours of vertex u are held in increasing order in
+ * targets[offsets[u]] to targets[offsets[u+1]-1], with the number of edges to
+ * each of them at the same index of counts. Memory grows with the number of
+ * vertices plus the number of distinct pairs joined by an edge, and a lookup
+ * is a binary search over the neighbours of one vertex.
+ *
+ * The rows are built in one pass from a buffer of edges. Edges added later
+ * between vertices that are already neighbours only raise a count. Edges
+ * joining new pairs are buffered again and merged into the rows, all at once,
+ * by the next lookup, so adding many edges before looking any up costs
+ * O(V + E log E) in all.
+ *
+ * @author Victor Hazali
+ */
+public class SparseAdjacency implements Adjacency {
+
+	/* Constants */
+	private static final int	TARGET_SHIFT	= 32;
+	private static final long	COUNT_MASK		= (1L << TARGET_SHIFT) - 1;
+
+	/* Member Variables */
+	private int					_vertexCount;
+	private int[]				_offsets;
+	private int[]				_targets;
+	private int[]				_counts;
+	// Edges between pairs that are not in the rows yet
+	private EdgeBuffer			_pending;
+
+	/* Constructor */
+
+	public SparseAdjacency(int vertexCount) {
+		this(vertexCount, new EdgeBuffer());
+	}
+
+	/**
+	 * Creates the rows holding the edges of a buffer.
+	 *
+	 * @param vertexCount
+	 *            number of vertices
+	 * @param edges
+	 *            edges to add. The buffer is kept for edges added later
+	 */
+	public SparseAdjacency(int vertexCount, EdgeBuffer edges) {
+		_vertexCount = vertexCount;
+		_offsets = new int[vertexCount + 1];
+		_targets = new int[0];
+		_counts = new int[0];
+		_pending = edges;
+		merge();
+	}
+
+	/* Public Methods */
+
+	@Override
+	public int getVertexCount() {
+		return _vertexCount;
+	}
+
+	@Override
+	public void addEdge(int vertex1, int vertex2) {
+		int entry = find(vertex1, vertex2);
+		if (entry < 0) {
+			_pending.add(vertex1, vertex2);
+			return;
+		}
+		_counts[entry] += 1;
+		_counts[find(vertex2, vertex1)] += 1;
+	}
+
+	/**
+	 * Removes one edge between a pair of vertices. Nothing is done if there
+	 * is no edge between them.
+	 */
+	@Override
+	public void removeEdge(int vertex1, int vertex2) {
+		merge();
+		int entry = find(vertex1, vertex2);
+		if (entry < 0 || _counts[entry] == 0) {
+			return;
+		}
+		// The pair stays in the rows with a count of 0
+		_counts[entry] -= 1;
+		_counts[find(vertex2, vertex1)] -= 1;
+	}
+
+	@Override
+	public boolean hasEdge(int vertex1, int vertex2) {
+		return countEdges(vertex1, vertex2) > 0;
+	}
+
+	@Override
+	public int countEdges(int vertex1, int vertex2) {
+		merge();
+		int entry = find(vertex1, vertex2);
+		return entry < 0 ? 0 : _counts[entry];
+	}
+
+	@Override
+	public int getDegree(int vertex) {
+		merge();
+		int degree = 0;
+		for (int entry = _offsets[vertex]; entry < _offsets[vertex + 1]; entry++) {
+			if (_counts[entry] > 0) {
+				degree++;
+			}
+		}
+		return degree;
+	}
+
+	@Override
+	public int[] getNeighbours(int vertex) {
+		merge();
+		int[] neighbours = new int[_offsets[vertex + 1] - _offsets[vertex]];
+		int degree = 0;
+		for (int entry = _offsets[vertex]; entry < _offsets[vertex + 1]; entry++) {
+			if (_counts[entry] > 0) {
+				neighbours[degree++] = _targets[entry];
+			}
+		}
+		return degree == neighbours.length ? neighbours : Arrays.copyOf(
+				neighbours, degree);
+	}
+
+	/* Private Methods */
+
+	/**
+	 * Finds the entry of vertex2 in the row of vertex1 by binary search.
+	 *
+	 * @return index of the entry in targets and counts, or a negative value if
+	 *         vertex2 is not in the row
+	 */
+	private int find(int vertex1, int vertex2) {
+		return Arrays.binarySearch(_targets, _offsets[vertex1],
+				_offsets[vertex1 + 1], vertex2);
+	}
+
+	/**
+	 * Rebuilds the rows with the pending edges added. Each row is gathered as
+	 * target and count pairs packed into longs, sorted, and then equal
+	 * targets are combined.
+	 */
+	private void merge() {
+		if (_pending.getSize() == 0) {
+			return;
+		}
+
+		// Counting the entries of each row, each edge giving one to both ends
+		int[] starts = new int[_vertexCount + 1];
+		for (int u = 0; u < _vertexCount; u++) {
+			starts[u + 1] = _offsets[u + 1] - _offsets[u];
+		}
+		for (int i = 0; i < _pending.getSize(); i++) {
+			starts[_pending.getFrom(i) + 1]++;
+			starts[_pending.getTo(i) + 1]++;
+		}
+		for (int u = 0; u < _vertexCount; u++) {
+			starts[u + 1] += starts[u];
+		}
+
+		// Gathering old entries and new edges into their rows
+		long[] entries = new long[starts[_vertexCount]];
+		int[] next = Arrays.copyOf(starts, _vertexCount);
+		for (int u = 0; u < _vertexCount; u++) {
+			for (int entry = _offsets[u]; entry < _offsets[u + 1]; entry++) {
+				entries[next[u]++] = pack(_targets[entry], _counts[entry]);
+			}
+		}
+		for (int i = 0; i < _pending.getSize(); i++) {
+			int from = _pending.getFrom(i), to = _pending.getTo(i);
+			entries[next[from]++] = pack(to, 1);
+			entries[next[to]++] = pack(from, 1);
+		}
+		_pending.clear();
+
+		// Sorting each row and combining the counts of equal targets
+		int[] offsets = new int[_vertexCount + 1];
+		int[] targets = new int[entries.length];
+		int[] counts = new int[entries.length];
+		int size = 0;
+		for (int u = 0; u < _vertexCount; u++) {
+			Arrays.sort(entries, starts[u], starts[u + 1]);
+			for (int i = starts[u]; i < starts[u + 1]; i++) {
+				int target = (int) (entries[i] >>> TARGET_SHIFT);
+				int count = (int) (entries[i] & COUNT_MASK);
+				if (size > offsets[u] && targets[size - 1] == target) {
+					counts[size - 1] += count;
+				} else {
+					targets[size] = target;
+					counts[size] = count;
+					size++;
+				}
+			}
+			offsets[u + 1] = size;
+		}
+
+		_offsets = offsets;
+		_targets = Arrays.copyOf(targets, size);
+		_counts = Arrays.copyOf(counts, size);
+	}
+
+	private static long pack(int target, int count) {
+		return (long) target << TARGET_SHIFT | count;
+	}
+}
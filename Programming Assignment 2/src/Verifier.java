@@ -1,4 +1,9 @@
-import java.util.Scanner;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Random;
 
 /**
  * Given a graph G, and a list P of vertices. Program checks whether P forms an
@@ -27,94 +32,136 @@ import java.util.Scanner;
  *              1<=T<=50; 2<=N <=300; 2<=M <=30000.
  *              Memory: 256M
  *              Running time: 2 seconds per T test cases.
+ * @options --train: no input is read and nothing is written. Instead
+ *          synthetic test cases are verified, so launch.sh can archive the
+ *          classes they load.
  * @author Victor Hazali
  */
 public class Verifier {
 
 	public static final boolean	DEBUG_MODE	= false;
 
-	public static void main(String[] args) {
+	// Command line option to run on synthetic test cases, as the training
+	// run of launch.sh
+	private static final String	TRAIN_OPTION	= "--train";
+	// Test cases, vertices and edges of each case, and repetitions of the
+	// training run
+	private static final int	TRAIN_CASES		= 10;
+	private static final int	TRAIN_VERTICES	= 300;
+	private static final int	TRAIN_EDGES		= 3000;
+	private static final int	TRAIN_ROUNDS	= 10;
+	private static final long	TRAIN_SEED		= 3230;
+
+	/**
+	 * Verifies the test cases read from a stream and writes the answers to
+	 * another one, so BatchServer can run the program without swapping the
+	 * standard streams or exiting the JVM.
+	 * 
+	 * @param input
+	 *            stream to read the test cases from
+	 * @param output
+	 *            stream to write the answers to
+	 * @param args
+	 *            command line options
+	 * @return the exit status of the program
+	 * @throws IOException
+	 *             when the input cannot be read
+	 */
+	public static int run(InputStream input, PrintStream output, String[] args)
+			throws IOException {
+
+		if (args.length > 0 && args[0].equals(TRAIN_OPTION)) {
+			train();
+			return 0;
+		}
 
 		// Variables initialisaiton
-		Scanner sc = new Scanner(System.in);
+		ByteTokenizer in = new ByteTokenizer(input);
 		int testcases = 0, numVertices = 0, numEdges = 0, pathVertices = 0;
-		String[] edges;
-		String[] path;
+		int vertex1, vertex2;
+		int[] path = new int[0];
 		Graph graph;
 		boolean successful = false;
 
 		// Reading number of testcases
-		testcases = sc.nextInt();
-		sc.nextLine();
+		testcases = in.nextInt();
+		in.skipLine();
 
 		// loop for T testcases
 		for (int i = 0; i < testcases; i++) {
 
 			// Read number of vertices and edges
-			numVertices = sc.nextInt();
-			numEdges = sc.nextInt();
-			sc.nextLine();
+			numVertices = in.nextInt();
+			numEdges = in.nextInt();
+			in.skipLine();
 
 			// For it to be a Hamilton cycle, M >= N
 			if (numEdges < numVertices) {
 				if (DEBUG_MODE) {
-					System.out.println("numEdges < numVertices.");
+					output.println("numEdges < numVertices.");
 				}
-				System.out.println("NO");
-				skipInput(sc, numEdges + 2);
+				output.println("NO");
+				skipInput(in, numEdges + 2);
 				continue;
 			}
 
-			edges = new String[numEdges];
+			// Initialize graph
+			graph = new Graph(numVertices);
 
-			// Read M number of edges
+			// Read M number of edges straight into the graph
 			for (int j = 0; j < numEdges; j++) {
-				edges[j] = sc.nextLine();
+				in.requireToken();
+				vertex1 = graph.addVertex(in.getBuffer(), in.getTokenStart(),
+						in.getTokenLength());
+				in.requireToken();
+				vertex2 = graph.addVertex(in.getBuffer(), in.getTokenStart(),
+						in.getTokenLength());
+				if (vertex1 >= 0 && vertex2 >= 0) {
+					graph.addEdge(vertex1, vertex2);
+				}
 			}
 
 			// Read p number of vertices in path P
-			pathVertices = sc.nextInt();
-			sc.nextLine();
+			pathVertices = in.nextInt();
+			in.skipLine();
 
 			// For it to be a Hamilton cycle, p must be exactly N+1
 			if (pathVertices != numVertices + 1) {
 				if (DEBUG_MODE) {
-					System.out.println("pathVertices != numVertices+1.");
+					output.println("pathVertices != numVertices+1.");
 				}
-				System.out.println("NO");
-				skipInput(sc, 1);
+				output.println("NO");
+				skipInput(in, 1);
 				continue;
 			}
-			// Read path P
-			path = sc.nextLine().split("\\s+");
+			// Read path P, as indices of the vertices
+			if (path.length < pathVertices) {
+				path = new int[pathVertices];
+			}
+			for (int j = 0; j < pathVertices; j++) {
+				in.requireToken();
+				path[j] = graph.findVertex(in.getBuffer(), in.getTokenStart(),
+						in.getTokenLength());
+			}
 
 			// For it to be a Hamilton cycle, P must start and end at the same
 			// vertex
-			if (!path[0].equals(path[pathVertices - 1])) {
+			if (path[0] != path[pathVertices - 1]) {
 				if (DEBUG_MODE) {
-					System.out
+					output
 							.println("First and last vertex in path does not match.");
 				}
-				System.out.println("NO");
+				output.println("NO");
 				continue;
 			}
 
-			// Initialize graph
-			graph = new Graph(numVertices);
-
-			// Add all edges into graph
-			for (String e : edges) {
-				String[] edge = e.split("\\s+");
-				graph.addEdge(edge[0], edge[1]);
-			}
-
 			// Traverse through path to see if it's a Hamilton cycle
 			// Start from the first vertex
 			if (graph.traverse(path[0]) == false) {
 				if (DEBUG_MODE) {
-					System.out.println("Failed to traverse first vertex in P");
+					output.println("Failed to traverse first vertex in P");
 				}
-				System.out.println("NO");
+				output.println("NO");
 				continue;
 			}
 
@@ -123,10 +170,10 @@ public class Verifier {
 				successful = graph.traverse(path[j - 1], path[j]);
 				if (successful == false) {
 					if (DEBUG_MODE) {
-						System.out.println("Failed to traverse P due to "
+						output.println("Failed to traverse P due to vertex "
 								+ path[j]);
 					}
-					System.out.println("NO");
+					output.println("NO");
 					break;
 				}
 			}
@@ -134,32 +181,95 @@ public class Verifier {
 			// Check to see if successfully traversed all internal nodes
 			if (successful == false) {
 				if (DEBUG_MODE) {
-					System.out
+					output
 							.println("Did not complete traversing internal vertices");
 				}
 				continue;
 			}
 
 			// If successful, traverse final node
-			if (graph
-					.edgeExists(path[pathVertices - 2], path[pathVertices - 1])) {
-				System.out.println("YES");
+			if (graph.edgeExists(path[pathVertices - 2], path[pathVertices - 1])) {
+				output.println("YES");
 			} else {
 				if (DEBUG_MODE) {
-					System.out
+					output
 							.println("No edge from last internal vertex to first vertex");
 				}
-				System.out.println("NO");
+				output.println("NO");
+			}
+		}
+		return 0;
+	}
+
+	public static void main(String[] args) throws IOException {
+		System.exit(run(System.in, System.out, args));
+	}
+
+	/**
+	 * Verifies synthetic test cases TRAIN_ROUNDS times, reading them from
+	 * memory and discarding the answers. launch.sh runs this once to record
+	 * the archive later runs start from.
+	 */
+	public static void train() throws IOException {
+		byte[] input = trainingInput(new Random(TRAIN_SEED)).getBytes();
+		PrintStream discard = new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+
+			@Override
+			public void write(byte[] b, int offset, int length) {
+			}
+		});
+		for (int round = 0; round < TRAIN_ROUNDS; round++) {
+			run(new ByteArrayInputStream(input), discard, new String[0]);
+		}
+	}
+
+	/**
+	 * Creates the input of the training run: graphs made of a Hamiltonian
+	 * cycle in random order and random chords, each followed by the cycle as
+	 * its path in every other case and by a broken path in the others.
+	 */
+	private static String trainingInput(Random random) {
+		StringBuilder input = new StringBuilder();
+		input.append(TRAIN_CASES).append('\n');
+		for (int i = 0; i < TRAIN_CASES; i++) {
+			int[] cycle = new int[TRAIN_VERTICES];
+			for (int j = 0; j < cycle.length; j++) {
+				int k = random.nextInt(j + 1);
+				cycle[j] = cycle[k];
+				cycle[k] = j + 1;
+			}
+			input.append(TRAIN_VERTICES).append(' ').append(TRAIN_EDGES)
+					.append('\n');
+			for (int j = 0; j < TRAIN_EDGES; j++) {
+				int u = j < cycle.length ? cycle[j] : 1 + random
+						.nextInt(TRAIN_VERTICES);
+				int v = j < cycle.length ? cycle[(j + 1) % cycle.length]
+						: 1 + random.nextInt(TRAIN_VERTICES);
+				input.append('V').append(u).append(" V").append(v).append('\n');
+			}
+			if (i % 2 == 1) {
+				int k = 1 + random.nextInt(cycle.length - 1);
+				cycle[k] = cycle[k - 1];
+			}
+			input.append(TRAIN_VERTICES + 1).append('\n');
+			for (int vertex : cycle) {
+				input.append('V').append(vertex).append(' ');
 			}
+			input.append('V').append(cycle[0]).append('\n');
 		}
+		return input.toString();
 	}
 
-	public static void skipInput(Scanner sc, int lines) {
+	public static void skipInput(ByteTokenizer in, int lines)
+			throws IOException {
 		if (DEBUG_MODE) {
 			System.out.println("Skipping " + lines + " line(s) of input");
 		}
 		for (int i = 0; i < lines; i++) {
-			sc.nextLine();
+			in.skipLine();
 		}
 	}
 }
@@ -72,6 +72,44 @@ public class Vertex implements Comparable<Vertex> {
 		return tail;
 	}
 
+	/**
+	 * Writes the name of the head vertex of a vertex into a buffer, as
+	 * getHeadVertex names it, with both names given as bytes.
+	 * 
+	 * @param name
+	 *            buffer holding the name of the vertex
+	 * @param offset
+	 *            index of the first byte of the name
+	 * @param length
+	 *            number of bytes of the name
+	 * @param into
+	 *            buffer of at least length bytes to write the name of the
+	 *            head vertex into, from its first index
+	 */
+	public static void writeHeadName(byte[] name, int offset, int length,
+			byte[] into) {
+		replaceFirst(name, offset, length, into, HEAD_VTX_FIRST_CHAR);
+	}
+
+	/**
+	 * Writes the name of the tail vertex of a vertex into a buffer, as
+	 * getTailVertex names it, with both names given as bytes.
+	 * 
+	 * @param name
+	 *            buffer holding the name of the vertex
+	 * @param offset
+	 *            index of the first byte of the name
+	 * @param length
+	 *            number of bytes of the name
+	 * @param into
+	 *            buffer of at least length bytes to write the name of the
+	 *            tail vertex into, from its first index
+	 */
+	public static void writeTailName(byte[] name, int offset, int length,
+			byte[] into) {
+		replaceFirst(name, offset, length, into, TAIL_VTX_FIRST_CHAR);
+	}
+
 	/**
 	 * Returns a string representation of the vertex in the format:
 	 * 
@@ -128,4 +166,19 @@ public class Vertex implements Comparable<Vertex> {
 
 		return getName().compareTo(other.getName());
 	}
+
+	/**
+	 * Copies a name given as bytes, replacing the first VERTEX_FIRST_CHAR in
+	 * it, as String.replaceFirst does.
+	 */
+	private static void replaceFirst(byte[] name, int offset, int length,
+			byte[] into, String replacement) {
+		System.arraycopy(name, offset, into, 0, length);
+		for (int i = 0; i < length; i++) {
+			if (into[i] == VERTEX_FIRST_CHAR.charAt(0)) {
+				into[i] = (byte) replacement.charAt(0);
+				return;
+			}
+		}
+	}
 }
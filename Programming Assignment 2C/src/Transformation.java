@@ -1,8 +1,11 @@
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Random;
 import java.util.Scanner;
 import java.util.SortedSet;
 import java.util.TreeSet;
@@ -91,6 +94,9 @@ import java.util.TreeSet;
  *              All the clauses are distinct. Each clause contains no repeated
  *              variable. Variables in each clauses are listed in increasing
  *              order of indices. Each variable appears at least once.
+ * @options --train: no input is read and nothing is written. Instead
+ *          synthetic test cases are transformed, so launch.sh can archive
+ *          the classes they load.
  * @author Victor Hazali
  */
 public class Transformation {
@@ -99,10 +105,20 @@ public class Transformation {
 	public static final boolean			DEBUG_MODE		= false;
 	private static final InputStream	INPUT_STREAM	= System.in;
 	private static final OutputStream	OUTPUT_STREAM	= System.out;
+	// Command line option to run on synthetic test cases, as the training
+	// run of launch.sh
+	private static final String			TRAIN_OPTION	= "--train";
+	// Test cases, variables and clauses of each case, and repetitions of the
+	// training run
+	private static final int			TRAIN_CASES		= 2;
+	private static final int			TRAIN_LITERALS	= 80;
+	private static final int			TRAIN_CLAUSES	= 99;
+	private static final int			TRAIN_ROUNDS	= 5;
+	private static final long			TRAIN_SEED		= 3230;
 
 	/* Member Variables */
-	private static Scanner				sc;
-	private static PrintWriter			writer;
+	private Scanner						sc;
+	private PrintWriter					writer;
 	private int							_litCount;
 	private int							_clausCount;
 	private Map<String, Vertex>			_vertexMap;
@@ -110,8 +126,12 @@ public class Transformation {
 
 	/* Constructor */
 	public Transformation() {
-		sc = new Scanner(INPUT_STREAM);
-		writer = new PrintWriter(OUTPUT_STREAM, true);
+		this(INPUT_STREAM, OUTPUT_STREAM);
+	}
+
+	public Transformation(InputStream input, OutputStream output) {
+		sc = new Scanner(input);
+		writer = new PrintWriter(output, true);
 	}
 
 	/* Accessors and Modifiers */
@@ -812,10 +832,87 @@ public class Transformation {
 		cleanup();
 	}
 
-	public static void main(String[] args) {
-		Transformation transform = new Transformation();
+	/**
+	 * Runs the program on the given streams and returns its exit status, the
+	 * entry point BatchServer uses in place of main.
+	 * 
+	 * @param input
+	 *            stream to read the test cases from
+	 * @param output
+	 *            stream to write the graphs to
+	 * @param args
+	 *            command line options
+	 * @return the exit status of the program
+	 */
+	public static int run(InputStream input, PrintStream output, String[] args) {
+		if (args.length > 0 && args[0].equals(TRAIN_OPTION)) {
+			train();
+			return 0;
+		}
+		try {
+			new Transformation(input, output).run();
+		} catch (IllegalArgumentException e) {
+			// A vertex could not be named
+			if (DEBUG_MODE) {
+				e.printStackTrace();
+			}
+			return 1;
+		}
+		return 0;
+	}
+
+	/**
+	 * Transforms synthetic test cases with the most variables and clauses
+	 * allowed TRAIN_ROUNDS times, discarding the graphs, so that launch.sh can record
+	 * the classes loaded along the way in a shared archive.
+	 */
+	public static void train() {
+		byte[] input = trainingInput(new Random(TRAIN_SEED)).getBytes();
+		OutputStream discard = new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
 
-		transform.run();
+			@Override
+			public void write(byte[] b, int offset, int length) {
+			}
+		};
+		for (int round = 0; round < TRAIN_ROUNDS; round++) {
+			new Transformation(new ByteArrayInputStream(input), discard).run();
+		}
+	}
+
+	/**
+	 * Creates the input of the training run: clauses of three distinct
+	 * variables in increasing order, each negated at random.
+	 */
+	private static String trainingInput(Random random) {
+		StringBuilder input = new StringBuilder();
+		input.append(TRAIN_CASES).append('\n');
+		for (int i = 0; i < TRAIN_CASES; i++) {
+			input.append(TRAIN_LITERALS).append(' ').append(TRAIN_CLAUSES)
+					.append('\n');
+			for (int k = 0; k < TRAIN_CLAUSES; k++) {
+				// Every variable appears in the first clauses
+				int first = Math.min(3 * k % TRAIN_LITERALS,
+						TRAIN_LITERALS - 3);
+				int second = first + 1
+						+ random.nextInt(TRAIN_LITERALS - first - 2);
+				int third = second + 1
+						+ random.nextInt(TRAIN_LITERALS - second - 1);
+				for (int literal : new int[] { first + 1, second + 1,
+						third + 1 }) {
+					input.append(random.nextBoolean() ? literal : -literal)
+							.append(' ');
+				}
+				input.append('\n');
+			}
+		}
+		return input.toString();
+	}
+
+	public static void main(String[] args) {
+		System.exit(run(System.in, System.out, args));
 	}
 
 }
@@ -66,15 +66,9 @@ public class Vertex implements Comparable<Vertex> {
 		setType(type);
 		setLitIndex(litIndex);
 		setClausIndex(clausIndex);
-		try {
-			giveName();
-		} catch (IllegalArgumentException e) {
-			if (Transformation.DEBUG_MODE) {
-				e.getMessage();
-				this.toString();
-			}
-			System.exit(1);
-		}
+		// Transformation.run turns a vertex that cannot be named into exit
+		// status 1
+		giveName();
 	}
 
 	public String getName() {
@@ -0,0 +1,107 @@
+#!/bin/bash
+#
+# Launches a program of one of the assignments from an archive of the classes,
+# and on newer JVMs the profiles, its --train run loaded, so that short runs
+# skip most of the class loading and interpretation of a cold start.
+#
+# Usage: launch.sh MAIN_CLASS [ARGS...] < input
+#
+#   MAIN_CLASS is SpaceshipMomentum, Verifier, GraphReductor or Transformation,
+#   or any other class found in the src directory of an assignment. Programs
+#   without a --train mode are launched as usual.
+#
+# The sources of the assignment are compiled into the cds directory of the
+# assignment on first use and again whenever a source is newer than the jar
+# packed from them, as the JVM only archives classes from jars. The bin
+# directory, written by Eclipse, is not used, so stale classes never run.
+# Recompiling drops every archive, which is then recorded again by the next
+# launch. A --train run that fails leaves no archive behind.
+# An archive recorded by another JDK is silently ignored by the JVM, so the
+# cds directory should be deleted after changing JDKs.
+#
+#   JDK 25 and later: ahead-of-time cache, holding classes and profiles
+#   JDK 13 and later: dynamic class data sharing archive, holding classes
+#   Older JDKs: no archive
+#
+# Environment: JAVA, JAVAC and JAR name the tools to use, java, javac and jar
+# by default.
+# CDS=off launches without the archive, e.g. to measure the difference.
+#
+# @author Victor Hazali
+
+JAVA=${JAVA:-java}
+JAVAC=${JAVAC:-javac}
+JAR=${JAR:-jar}
+TRAINED="SpaceshipMomentum Verifier GraphReductor Transformation"
+
+if [ $# -lt 1 ]; then
+	echo "Usage: $0 MAIN_CLASS [ARGS...]" >&2
+	exit 64
+fi
+main=$1
+shift
+
+root=$(cd "$(dirname "$0")" && pwd)
+project=
+for dir in "$root"/*/; do
+	if [ -f "$dir/src/$main.java" ]; then
+		project=${dir%/}
+		break
+	fi
+done
+if [ -z "$project" ]; then
+	echo "No assignment has a class named $main" >&2
+	exit 64
+fi
+
+src=$project/src
+cds=$project/cds
+classes=$cds/classes
+jar=$cds/classes.jar
+
+# Recompiling the sources, and dropping every archive of the old classes
+if [ ! -f "$jar" ] || [ -n "$(find "$src" -newer "$jar" -name '*.java' | head -n 1)" ]; then
+	rm -rf "$cds"
+	mkdir -p "$classes"
+	"$JAVAC" -nowarn -d "$classes" "$src"/*.java || exit 1
+	"$JAR" cf "$jar" -C "$classes" . || exit 1
+fi
+
+if [ "$CDS" = off ] || [[ " $TRAINED " != *" $main "* ]]; then
+	exec "$JAVA" -cp "$classes" "$main" "$@"
+fi
+
+# Asking the JVM which kind of archive it supports only if there is none yet
+if [ -f "$cds/$main.aot" ]; then
+	kind=aot
+elif [ -f "$cds/$main.jsa" ]; then
+	kind=jsa
+else
+	flags=$("$JAVA" -XX:+PrintFlagsFinal -version 2>/dev/null)
+	if grep -q AOTCacheOutput <<< "$flags"; then
+		kind=aot
+	elif grep -q ArchiveClassesAtExit <<< "$flags"; then
+		kind=jsa
+	else
+		exec "$JAVA" -cp "$classes" "$main" "$@"
+	fi
+fi
+archive=$cds/$main.$kind
+if [ $kind = aot ]; then
+	record=-XX:AOTCacheOutput=$archive
+	use=-XX:AOTCache=$archive
+else
+	record=-XX:ArchiveClassesAtExit=$archive
+	use=-XX:SharedArchiveFile=$archive
+fi
+
+if [ ! -f "$archive" ]; then
+	if ! "$JAVA" "$record" -Xlog:disable -cp "$jar" "$main" --train < /dev/null; then
+		rm -f "$archive"
+		echo "Training $main failed, launching without an archive" >&2
+	fi
+fi
+if [ -f "$archive" ]; then
+	exec "$JAVA" "$use" -Xlog:disable -Xshare:auto -cp "$jar" "$main" "$@"
+fi
+exec "$JAVA" -cp "$jar" "$main" "$@"